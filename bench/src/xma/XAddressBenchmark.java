@@ -0,0 +1,349 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the address API over corpora of address strings.
+ * Each operation takes the next element of its corpus, so that a
+ * measurement covers the variety of the corpus.
+ *
+ * <p> The corpora are named by {@link XAddressCorpus}. </p>
+ *
+ * <p> Run with <code>ant bench</code>, which employs the GC profiler
+ * for allocation per operation. </p>
+ *
+ * @author jdp
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XAddressBenchmark
+    extends java.lang.Object
+{
+    private final static int SIZE = 1024;
+
+
+    /**
+     * The multiple pass construction of an address that preceded the
+     * one pass of the address constructor, followed by the hashes
+     * that it retains.  The legacy resource split copies the
+     * resource to an array.
+     */
+    final static class Legacy
+        extends java.lang.Object
+    {
+        final String identifier, host, resource, logon, full;
+
+        final String resourceKind, resourceSession;
+
+        final long hashBare, hashFull;
+
+
+        Legacy(String string){
+            super();
+            final long offsets = XAddress.Offsets(string);
+            final int length = string.length();
+            if (XAddress.Status.Valid != XAddress.Validate(offsets,length,XAddress.Require.Identifier))
+                throw new IllegalArgumentException(string);
+            else {
+                final int indexOfHost = XAddress.IndexOfHost(offsets);
+                final int indexOfSlash = XAddress.IndexOfSlash(offsets);
+                switch(XAddress.Count(offsets)){
+                case 1:
+                    this.identifier = string;
+                    this.host = null;
+                    this.resource = null;
+                    this.logon = null;
+                    this.full = null;
+                    this.resourceKind = null;
+                    this.resourceSession = null;
+                    break;
+                case 2:
+                    this.identifier = string.substring(0,indexOfHost);
+                    this.host = Host(string,(indexOfHost+1),length);
+                    this.resource = null;
+                    this.logon = string;
+                    this.full = null;
+                    this.resourceKind = null;
+                    this.resourceSession = null;
+                    break;
+                default:
+                    this.identifier = string.substring(0,indexOfHost);
+                    this.host = Host(string,(indexOfHost+1),indexOfSlash);
+                    this.resource = string.substring(indexOfSlash+1);
+                    this.logon = string.substring(0,indexOfSlash);
+                    this.full = string;
+                    final String[] components = Resource(this.resource);
+                    if (null != components){
+                        this.resourceKind = components[0];
+                        this.resourceSession = components[1];
+                    }
+                    else {
+                        this.resourceKind = this.resource;
+                        this.resourceSession = this.resource;
+                    }
+                    break;
+                }
+                this.hashFull = XAddressHash.Hash64(string,XAddressHash.SEED);
+                this.hashBare = XAddressHash.Hash64(string,0,((-1 < indexOfSlash)?(indexOfSlash):(length)),XAddressHash.SEED);
+            }
+        }
+
+
+        private final static String Host(String string, int start, int end){
+            final int id = XAddressDictionary.Hosts.lookup(string,start,end);
+            if (-1 < id)
+                return XAddressDictionary.Hosts.get(id);
+            else
+                return string.substring(start,end);
+        }
+        private final static String[] Resource(String string){
+            final int dot = string.lastIndexOf('.');
+            if (0 < dot){
+                return new String[]{
+                    string.substring(0,dot),
+                    string.substring(dot+1)
+                };
+            }
+            else {
+                final char[] cary = string.toCharArray();
+                final int carlen = cary.length;
+                for (int cc = (carlen-1); -1 < cc; cc--){
+                    final char ch = cary[cc];
+                    if (XAddress.IsNotHex(ch)){
+                        final int end;
+                        if (5 == cc && 'i' == ch && 'a' == cary[0] && 'n' == cary[1])
+                            end = (cc + 2);
+                        else if (4 == cc && 'n' == ch && 'i' == cary[0] && 'P' == cary[1])
+                            end = (cc + 2);
+                        else
+                            end = (cc + 1);
+                        return new String[]{
+                            string.substring(0,end),
+                            string.substring(end)
+                        };
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+
+    @Param({"production","bare","full","android","iphone","longhost","malformed"})
+    public String corpus;
+
+    private String[] strings;
+    /**
+     * Strings of the valid addresses of the corpus
+     */
+    private String[] valid;
+    /**
+     * Valid addresses of the corpus
+     */
+    private XAddress[] addresses;
+
+    private String[] resources;
+
+    private byte[][] serial;
+
+    private ByteBuffer codec;
+    /**
+     * Table of sessions of the corpus
+     */
+    private java.util.HashMap<XAddressKey.Session,XAddress> sessions;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    private int index;
+
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws IOException
+    {
+        this.strings = XAddressCorpus.Named(this.corpus,XAddressCorpus.SEED).generate(SIZE);
+
+        final ArrayList<XAddress> addresses = new ArrayList<XAddress>();
+        for (String string : this.strings){
+            final XAddress address = XAddress.Parse(string,XAddress.Require.Identifier);
+            if (null != address){
+                /*
+                 * As a server registers the hosts it serves
+                 */
+                if (null != address.host)
+                    XAddressDictionary.Hosts.id(address.host);
+                addresses.add(address);
+            }
+        }
+        final int count = addresses.size();
+        this.addresses = new XAddress[SIZE];
+        this.valid = new String[SIZE];
+        this.resources = new String[SIZE];
+        this.serial = new byte[SIZE][];
+        for (int cc = 0; cc < SIZE; cc++){
+            final XAddress address = addresses.get(cc % count);
+            this.addresses[cc] = address;
+            this.valid[cc] = address.toString();
+            this.resources[cc] = (null != address.resource)?(address.resource):(address.identifier);
+            this.serial[cc] = Write(address);
+        }
+        this.codec = ByteBuffer.allocate(0x10000);
+        this.sessions = new java.util.HashMap<XAddressKey.Session,XAddress>();
+        for (XAddress address : this.addresses){
+            this.sessions.put(new XAddressKey.Session(address),address);
+        }
+    }
+
+
+    @Benchmark
+    public long offsets(){
+        return XAddress.Offsets(this.strings[this.next()]);
+    }
+    @Benchmark
+    public String[] scan(){
+        try {
+            return XAddress.Scan(this.strings[this.next()]);
+        }
+        catch (IllegalArgumentException exc){
+            return null;
+        }
+    }
+    @Benchmark
+    public String[] resource(){
+        return XAddress.Resource(this.resources[this.next()]);
+    }
+    @Benchmark
+    public XAddress construct(){
+        return XAddress.Parse(this.strings[this.next()],XAddress.Require.Identifier);
+    }
+    /**
+     * One pass construction, having the hashes
+     */
+    @Benchmark
+    public XAddress constructFused(){
+        return new XAddress(this.valid[this.next()]);
+    }
+    /**
+     * Multiple pass construction, and the hashes
+     */
+    @Benchmark
+    public Object constructLegacy(){
+        return new Legacy(this.valid[this.next()]);
+    }
+    @Benchmark
+    public boolean equalsTo(){
+        final int a = this.next();
+        return this.addresses[a].equals(this.addresses[(a+1) & (SIZE-1)]);
+    }
+    @Benchmark
+    public int compareTo(){
+        final int a = this.next();
+        return this.addresses[a].compareTo(this.addresses[(a+1) & (SIZE-1)]);
+    }
+    @Benchmark
+    public boolean equalsSession(){
+        final int a = this.next();
+        return this.addresses[a].equalsSession(this.addresses[(a+1) & (SIZE-1)]);
+    }
+    /**
+     * Session table lookup, numeric with system property
+     * <code>xma.XAddress.sessions</code>
+     */
+    @Benchmark
+    public XAddress sessionLookup(){
+        return this.sessions.get(new XAddressKey.Session(this.addresses[this.next()]));
+    }
+    @Benchmark
+    public int hashCodeOf(){
+        return this.addresses[this.next()].hashCode();
+    }
+    @Benchmark
+    public long hash64(){
+        return this.addresses[this.next()].hash64();
+    }
+    @Benchmark
+    public int serialize()
+        throws IOException
+    {
+        this.buffer.reset();
+        final ObjectOutputStream out = new ObjectOutputStream(this.buffer);
+        out.writeObject(this.addresses[this.next()]);
+        out.close();
+        return this.buffer.size();
+    }
+    @Benchmark
+    public Object deserialize()
+        throws IOException, ClassNotFoundException
+    {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.serial[this.next()]));
+        return in.readObject();
+    }
+    @Benchmark
+    public XAddress codec(){
+        final ByteBuffer codec = this.codec;
+        codec.clear();
+        XAddressCodec.Encode(this.addresses[this.next()],codec);
+        codec.flip();
+        return XAddressCodec.Decode(codec,XAddress.Require.Identifier);
+    }
+
+
+    private int next(){
+        final int index = this.index;
+        this.index = ((index+1) & (SIZE-1));
+        return index;
+    }
+
+
+    private final static byte[] Write(XAddress address)
+        throws IOException
+    {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(address);
+        out.close();
+        return buffer.toByteArray();
+    }
+}
@@ -35,8 +35,21 @@ package xma;
  * 
  * <p> The only qualifications required here are in '@' and '/' as
  * required to parse strings of the form
- * <code>identifier@host/resource</code>.  Additional validation may
- * be applied by subclasses. </p>
+ * <code>identifier@host/resource</code>, and that the components
+ * named by the {@link XAddress.Require requirement} are not empty.
+ * Additional validation may be applied by subclasses. </p>
+ * 
+ * <p> The {@link #Validate(java.lang.CharSequence,XAddress.Require)
+ * Validate} and {@link #Parse(java.lang.String,XAddress.Require)
+ * Parse} methods qualify input without throwing exceptions, for the
+ * cost of hostile input. </p>
+ * 
+ * <h3>Construction</h3>
+ * 
+ * <p> The constructor reads its input once, from start to end.  The
+ * one pass locates the delimiters, the split of the resource into
+ * kind and session, and computes the {@link #hash64() full} and
+ * {@link #bareHash64() bare} hashes, which are retained. </p>
  * 
  * <h3>Identity</h3>
  * 
@@ -49,8 +62,22 @@ package xma;
  * from full to logon or identifier.  The intent is to support list
  * sorting, where the information in the list is employed. </p>
  * 
+ * <p> Hosts registered in {@link XAddressDictionary#Hosts} are
+ * shared from the dictionary, and logon components having equal host
+ * identifiers are compared by identifier component.  Parsing only
+ * looks a host up, and an unregistered host is a substring of the
+ * input. </p>
+ * 
  * <p> The hash code and char sequence (string) methods employ all
- * existing information. </p>
+ * existing information.  As the hash code is not consistent with
+ * the equals method, hash collections are keyed by {@link
+ * XAddressKey} views of an address. </p>
+ * 
+ * <h3>Serialization</h3>
+ * 
+ * <p> An address is written in the compact form of {@link
+ * XAddressSerial}, having its identifier, host and resource
+ * components, and is reconstructed on reading. </p>
  * 
  * <h3>Multiple resources</h3>
  * 
@@ -69,6 +96,26 @@ public class XAddress
                java.lang.Comparable<XAddress>
 {
     public final static long serialVersionUID = 1L;
+    /**
+     * Result of {@link #Offsets(java.lang.CharSequence)} for null or
+     * empty input
+     */
+    public final static long SCAN_EMPTY = -1L;
+    /**
+     * Offsets argument of the protected constructor for input not
+     * yet scanned
+     */
+    private final static long SCAN_PENDING = Long.MIN_VALUE;
+
+    /**
+     * Resource sessions of lower case hex, having no more than
+     * sixteen digits, are held in numeric form for {@link
+     * #equalsSession(XAddress)} and {@link XAddressKey.Session} with
+     * system property <code>xma.XAddress.sessions</code>
+     */
+    public final static boolean SESSIONS = Boolean.getBoolean("xma.XAddress.sessions");
+
+    protected final static java.nio.charset.Charset UTF8 = java.nio.charset.Charset.forName("UTF-8");
 
 
     /**
@@ -90,6 +137,62 @@ public class XAddress
          */
         Full;
     }
+    /**
+     * Result of validation.  An invalid result of {@link
+     * #Offsets(java.lang.CharSequence)} is the negative ordinal of
+     * its status.
+     */
+    public enum Status {
+        /**
+         * Input satisfies its requirement
+         */
+        Valid,
+        /**
+         * Null or empty input
+         */
+        Empty,
+        /**
+         * Input components less than required, or missing
+         * requirement
+         */
+        Extent,
+        /**
+         * Input has a second '@' preceding any '/'
+         */
+        HostDuplicate,
+        /**
+         * Input has a '/' without a preceding '@'
+         */
+        HostMissing,
+        /**
+         * Input has an empty identifier where one is required
+         */
+        IdentifierEmpty,
+        /**
+         * Input has an empty host where one is required
+         */
+        HostEmpty,
+        /**
+         * Input has an empty resource where one is required
+         */
+        ResourceEmpty;
+
+
+        private final static Status[] List = Status.values();
+
+        /**
+         * @param offsets Result of {@link
+         * XAddress#Offsets(java.lang.CharSequence)}
+         * @return Valid for non negative offsets, or the status of
+         * the invalid result
+         */
+        public final static Status For(long offsets){
+            if (0L <= offsets)
+                return Valid;
+            else
+                return List[(int)(-offsets)];
+        }
+    }
 
 
     /**
@@ -129,6 +232,35 @@ public class XAddress
     public final String identifier, host, resource, logon, full;
 
     public final String resourceKind, resourceSession;
+    /**
+     * Identifier of {@link #host} in {@link
+     * XAddressDictionary#Hosts} plus one, or zero when not resolved
+     * (not registered, or following deserialization), or negative one
+     * for none
+     */
+    private transient int hostId;
+    /**
+     * Identifier of {@link #resourceKind} in {@link
+     * XAddressDictionary#Kinds} plus one, or zero when not resolved
+     * (not registered, or following deserialization), or negative one
+     * for none
+     */
+    private transient int kindId;
+    /**
+     * Hashes of {@link XAddressHash} computed in construction, or
+     * zero following deserialization in the default form
+     */
+    private final transient long hashBare, hashFull;
+    /**
+     * Number of digits of a numeric {@link #resourceSession}, or
+     * negative one for a session held as a string, or zero following
+     * deserialization in the default form
+     */
+    private final transient int sessionDigits;
+    /**
+     * Value of a numeric {@link #resourceSession}
+     */
+    private final transient long sessionValue;
 
 
     /**
@@ -143,96 +275,355 @@ public class XAddress
      * @param require Input components extent requirement
      */
     public XAddress(String string, XAddress.Require require){
+        this(string,SCAN_PENDING,require);
+    }
+    /**
+     * @param string A part or whole XMPP address, bounded by a
+     * component list length requirement
+     * @param offsets Result of {@link
+     * #Offsets(java.lang.CharSequence)} for the string, qualified
+     * before the string is read
+     * @param require Input components extent requirement
+     */
+    protected XAddress(String string, long offsets, XAddress.Require require){
         super();
+        final int length = (null != string)?(string.length()):(0);
 
-        final String[] parts = XAddress.Scan(string);
-        if (null == parts || null == require)
+        if (SCAN_PENDING != offsets && Status.Valid != XAddress.Validate(offsets,length,require))
             throw new IllegalArgumentException(string);
         else {
+            /*
+             * One forward pass locates the delimiters when the
+             * offsets are pending, hashes the host for its
+             * dictionary, finds the last '.', the last character not
+             * hex and the last upper case hex in the resource,
+             * accumulates the value of its trailing hex, and hashes
+             * the bare and full forms.
+             */
+            final boolean pending = (SCAN_PENDING == offsets);
+            int indexOfHost = (pending)?(-1):(XAddress.IndexOfHost(offsets));
+            int indexOfSlash = (pending)?(-1):(XAddress.IndexOfSlash(offsets));
+            int hostHash = 0, dot = -1, notHex = -1, upper = -1;
+            long hash = XAddressHash.SEED, bare = 0L, hex = 0L;
+            boolean duplicate = false;
 
-            switch(parts.length){
-            case 1:
-                switch (require){
-                case Logon:
-                case Full:
-                    throw new IllegalArgumentException(string);
-                default:
+            for (int cc = 0; cc < length; cc++){
+                final char ch = string.charAt(cc);
+
+                if (-1 < indexOfSlash && indexOfSlash < cc){
+                    final int digit = XAddress.Hex(ch);
+                    if (-1 < digit){
+                        hex = ((hex<<4)|digit);
+                        if ('A' <= ch && 'F' >= ch)
+                            upper = cc;
+                    }
+                    else {
+                        if ('.' == ch)
+                            dot = cc;
+                        notHex = cc;
+                    }
+                }
+                else if ('/' == ch){
+                    indexOfSlash = cc;
+                    bare = hash;
+                }
+                else if ('@' == ch){
+                    if (-1 == indexOfHost || cc == indexOfHost)
+                        indexOfHost = cc;
+                    else {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                else if (-1 < indexOfHost && indexOfHost < cc)
+                    hostHash = ((31*hostHash)+ch);
+
+                hash = XAddressHash.Step1(hash,ch);
+            }
+            if (pending)
+                offsets = (0 < length)?(XAddress.Delimiters(indexOfHost,indexOfSlash,duplicate)):(SCAN_EMPTY);
+
+            if (Status.Valid != XAddress.Validate(offsets,length,require))
+                throw new IllegalArgumentException(string);
+            else {
+                this.hashFull = XAddressHash.Finish64(hash,length);
+                if (-1 < indexOfSlash)
+                    this.hashBare = XAddressHash.Finish64(bare,indexOfSlash);
+                else
+                    this.hashBare = this.hashFull;
+
+                switch(XAddress.Count(offsets)){
+                case 1:
                     /*
                      * identifier
                      */
-                    this.identifier = parts[0];
+                    this.identifier = string;
                     this.host = null;
+                    this.hostId = -1;
                     this.resource = null;
+                    this.logon = null;
+                    this.full = null;
+                    this.kindId = -1;
                     this.resourceKind = null;
                     this.resourceSession = null;
+                    this.sessionDigits = -1;
+                    this.sessionValue = 0L;
                     break;
-                }
-                break;
-            case 2:
-                switch (require){
-                case Full:
-                    throw new IllegalArgumentException(string);
-                default:
+                case 2:
                     /*
                      * identifier, host
                      */
-                    this.identifier = parts[0];
-                    this.host = parts[1];
+                    this.identifier = string.substring(0,indexOfHost);
+                    this.hostId = XAddress.HostId(string,(indexOfHost+1),length,hostHash);
+                    if (0 < this.hostId)
+                        this.host = XAddressDictionary.Hosts.get(this.hostId-1);
+                    else
+                        this.host = string.substring(indexOfHost+1);
                     this.resource = null;
+                    /*
+                     * The input is canonical
+                     */
+                    this.logon = string;
+                    this.full = null;
+                    this.kindId = -1;
                     this.resourceKind = null;
                     this.resourceSession = null;
+                    this.sessionDigits = -1;
+                    this.sessionValue = 0L;
                     break;
-                }
-                break;
-            case 3:
-                /*
-                 * identifier, host, resource
-                 */
-                this.identifier = parts[0];
-                this.host = parts[1];
-                this.resource = parts[2];
-                String[] components = Resource(this.resource);
-                if (null != components){
-                    this.resourceKind = components[0];
-                    this.resourceSession = components[1];
-                }
-                else {
-                    this.resourceKind = this.resource;
-                    this.resourceSession = this.resource;
-                }
-                break;
-            default:
-                throw new IllegalStateException();
-            }
-            /*
-             */
-            final StringBuilder strbuf = new StringBuilder();
-            strbuf.append(this.identifier);
-
-            if (null != this.host){
-                strbuf.append('@');
-                strbuf.append(this.host);
-
-                this.logon = strbuf.toString();
-
-                if (null != this.resource){
+                case 3:
+                    /*
+                     * identifier, host, resource
+                     */
+                    this.identifier = string.substring(0,indexOfHost);
+                    this.hostId = XAddress.HostId(string,(indexOfHost+1),indexOfSlash,hostHash);
+                    if (0 < this.hostId)
+                        this.host = XAddressDictionary.Hosts.get(this.hostId-1);
+                    else
+                        this.host = string.substring(indexOfHost+1,indexOfSlash);
+                    this.resource = string.substring(indexOfSlash+1);
+                    /*
+                     * The input is canonical
+                     */
+                    this.logon = string.substring(0,indexOfSlash);
+                    this.full = string;
+                    /*
+                     * Kind and session as by Resource(String)
+                     */
+                    final int resource = (indexOfSlash+1);
+                    final int kindEnd, session;
+                    long match = -1L;
+                    if (resource < dot){
+                        kindEnd = dot;
+                        session = (dot+1);
+                    }
+                    else if (-1 < (match = XAddressKinds.Match(string,resource,length,(notHex+1)))){
+                        kindEnd = (int)match;
+                        session = kindEnd;
+                    }
+                    else if (-1 < notHex){
+                        kindEnd = (notHex+1);
+                        session = kindEnd;
+                    }
+                    else {
+                        kindEnd = length;
+                        session = resource;
+                    }
+                    if (-1 < match)
+                        this.kindId = ((int)(match>>>32))+1;
+                    else
+                        this.kindId = XAddress.KindId(string,resource,kindEnd);
 
-                    strbuf.append('/');
-                    strbuf.append(this.resource);
+                    if (0 < this.kindId)
+                        this.resourceKind = XAddressDictionary.Kinds.get(this.kindId-1);
+                    else
+                        this.resourceKind = string.substring(resource,kindEnd);
 
-                    this.full = strbuf.toString();
+                    if (resource == session)
+                        this.resourceSession = this.resource;
+                    else
+                        this.resourceSession = string.substring(session);
+                    /*
+                     * A session of lower case hex following the last
+                     * character not hex has the value of the trailing
+                     * digits
+                     */
+                    final int digits = (length-session);
+                    if (SESSIONS && notHex < session && upper < session && 0 < digits && 16 >= digits){
+                        this.sessionDigits = digits;
+                        this.sessionValue = (16 == digits)?(hex):(hex & ((1L<<(digits<<2))-1L));
+                    }
+                    else {
+                        this.sessionDigits = -1;
+                        this.sessionValue = 0L;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException();
                 }
-                else
-                    this.full = null;
-            }
-            else {
-                this.logon = null;
-                this.full = null;
             }
         }
     }
 
 
+    /**
+     * @return Canonical instance of this address from the default
+     * pool
+     * @see XAddressPool
+     */
+    public XAddress intern(){
+        return XAddressPool.Default.intern(this);
+    }
+    /**
+     * @return Serial form of this class and its subclasses in this
+     * package, or this address in the default form for other
+     * subclasses
+     * @see XAddressSerial
+     */
+    protected Object writeReplace()
+        throws java.io.ObjectStreamException
+    {
+        final Class<?> clas = this.getClass();
+        if (XAddress.class == clas || XAddress.Identifier.class == clas ||
+            XAddress.Logon.class == clas || XAddress.Full.class == clas)
+        {
+            return new XAddressSerial(this);
+        }
+        else
+            return this;
+    }
+    /**
+     * @return Identifier of the host in {@link
+     * XAddressDictionary#Hosts}, or negative one for no host or a
+     * host not registered
+     */
+    public int hostId(){
+        int hostId = this.hostId;
+        if (0 == hostId && null != this.host){
+            /*
+             * A host not registered is looked up again, as it may be
+             * registered later
+             */
+            hostId = XAddress.HostId(this.host,0,this.host.length(),this.host.hashCode());
+            this.hostId = hostId;
+        }
+        if (0 < hostId)
+            return (hostId-1);
+        else
+            return -1;
+    }
+    /**
+     * @return Identifier of the resource kind in {@link
+     * XAddressDictionary#Kinds}, or negative one for no resource or a
+     * kind not registered
+     * @see XAddressKinds
+     */
+    public int kindId(){
+        int kindId = this.kindId;
+        if (0 == kindId && null != this.resourceKind){
+            /*
+             * A kind not registered is looked up again, as it may be
+             * registered later
+             */
+            kindId = XAddress.KindId(this.resourceKind,0,this.resourceKind.length());
+            this.kindId = kindId;
+        }
+        if (0 < kindId)
+            return (kindId-1);
+        else
+            return -1;
+    }
+    /**
+     * @return Number of hex digits of a numeric resource session, or
+     * negative one for no resource or a session held as a string
+     * @see #SESSIONS
+     */
+    public int sessionDigits(){
+        final int digits = this.sessionDigits;
+        if (0 != digits)
+            return digits;
+        else if (SESSIONS && null != this.resourceSession)
+            return XAddress.SessionDigits(this.resourceSession);
+        else
+            return -1;
+    }
+    /**
+     * @return Value of a numeric resource session, or zero
+     * @see #sessionDigits()
+     */
+    public long sessionValue(){
+        if (0 != this.sessionDigits)
+            return this.sessionValue;
+        else if (0 < this.sessionDigits()){
+            final String session = this.resourceSession;
+            long value = 0L;
+            for (int cc = 0, len = session.length(); cc < len; cc++){
+                value = ((value<<4)|XAddress.Hex(session.charAt(cc)));
+            }
+            return value;
+        }
+        else
+            return 0L;
+    }
+    /**
+     * The identity of a session is the logon, resource kind and
+     * resource session of a full address.  Numeric sessions are
+     * compared by value.
+     *
+     * @param that Address
+     * @return Both addresses have a resource, and equal logon,
+     * resource kind and resource session; or neither has a resource,
+     * and their bare forms are equal
+     * @see XAddressKey.Session
+     */
+    public boolean equalsSession(XAddress that){
+        if (this == that)
+            return true;
+        else if (null == that)
+            return false;
+        else if (null == this.resource || null == that.resource)
+            return (null == this.resource && null == that.resource && XAddressKey.BareEquals(this,that));
+        /*
+         * The length of the resource distinguishes "a.1f" from
+         * "a1f", having the same kind and session
+         */
+        else if (this.resource.length() == that.resource.length() &&
+                 this.equalsLogon(that) && this.equalsKind(that))
+        {
+            final int digits = this.sessionDigits();
+            if (digits != that.sessionDigits())
+                return false;
+            else if (0 < digits)
+                return (this.sessionValue() == that.sessionValue());
+            else
+                return this.resourceSession.equals(that.resourceSession);
+        }
+        else
+            return false;
+    }
+    /**
+     * @return Stable hash of the complete address
+     * @see XAddressHash
+     */
+    public long hash64(){
+        final long hash = this.hashFull;
+        if (0L != hash)
+            return hash;
+        else
+            return XAddressHash.Full64(this);
+    }
+    /**
+     * @return Stable hash of the logon, or of the identifier of an
+     * address without host
+     * @see XAddressHash
+     */
+    public long bareHash64(){
+        final long hash = this.hashBare;
+        if (0L != hash)
+            return hash;
+        else
+            return XAddressHash.Bare64(this);
+    }
     public int length(){
         if (null != this.full)
             return this.full.length();
@@ -295,12 +686,12 @@ public class XAddress
             if (null == this.host || null == that.host)
                 return this.identifier.equals(that.identifier);
             else
-                return this.logon.equals(that.logon);
+                return this.equalsLogon(that);
         }
-        else if (this.logon.equals(that.logon)){
+        else if (this.equalsLogon(that)){
 
             if (null != this.resource && null != that.resource)
-                return this.resourceKind.equals(that.resourceKind);
+                return this.equalsKind(that);
             else
                 return true;
         }
@@ -315,84 +706,490 @@ public class XAddress
             if (null == this.host || null == that.host)
                 return this.identifier.compareTo(that.identifier);
             else
-                return this.logon.compareTo(that.logon);
+                return this.compareToLogon(that);
         }
         else {
             return this.full.compareTo(that.full);
         }
     }
+    /**
+     * Compare logon components with hosts by dictionary identifier.
+     * Both addresses have a host.
+     */
+    private boolean equalsLogon(XAddress that){
+        final int thisHost = this.hostId();
+        if (-1 < thisHost){
+            final int thatHost = that.hostId();
+            if (-1 < thatHost)
+                return (thisHost == thatHost && this.identifier.equals(that.identifier));
+        }
+        return this.logon.equals(that.logon);
+    }
+    /**
+     * Compare resource kinds by dictionary identifier.  Both
+     * addresses have a resource.
+     */
+    private boolean equalsKind(XAddress that){
+        final int thisKind = this.kindId();
+        if (-1 < thisKind){
+            final int thatKind = that.kindId();
+            if (-1 < thatKind)
+                return (thisKind == thatKind);
+        }
+        return this.resourceKind.equals(that.resourceKind);
+    }
+    /**
+     * Order logon components with hosts by dictionary identifier.
+     * Both addresses have a host.  With equal hosts, logon order is
+     * the order of identifiers terminated by '@'.
+     */
+    private int compareToLogon(XAddress that){
+        final int thisHost = this.hostId();
+        if (-1 < thisHost && thisHost == that.hostId()){
+            final String a = this.identifier, b = that.identifier;
+            final int alen = a.length(), blen = b.length();
+            final int len = Math.min(alen,blen);
+            for (int cc = 0; cc < len; cc++){
+                final char ac = a.charAt(cc);
+                final char bc = b.charAt(cc);
+                if (ac != bc)
+                    return (ac - bc);
+            }
+            if (alen == blen)
+                return 0;
+            else if (alen < blen)
+                return ('@' - b.charAt(alen));
+            else
+                return (a.charAt(blen) - '@');
+        }
+        else
+            return this.logon.compareTo(that.logon);
+    }
 
 
+    /**
+     * @return Host identifier plus one, or zero for a host not
+     * registered
+     */
+    private final static int HostId(CharSequence string, int start, int end, int hash){
+        return (XAddressDictionary.Hosts.lookup(string,start,end,hash)+1);
+    }
+    /**
+     * @return Kind identifier plus one, or zero for a kind not
+     * registered
+     */
+    private final static int KindId(CharSequence string, int start, int end){
+        return (XAddressKinds.Lookup(string,start,end)+1);
+    }
+    /**
+     * Parse an XMPP address through the default cache.
+     * 
+     * @param string A part or whole XMPP address
+     * @return Shared address
+     * @exception java.lang.IllegalArgumentException For invalid input
+     * @see XAddressCache
+     */
+    public final static XAddress Of(String string){
+        return XAddressCache.Default.get(string);
+    }
+    /**
+     * Parse an XMPP address without throwing an exception for invalid
+     * input.
+     * 
+     * @param string A part or whole XMPP address
+     * @param require Input components extent requirement
+     * @return Null for invalid input
+     * @see #Validate(java.lang.CharSequence,XAddress.Require)
+     */
+    public final static XAddress Parse(String string, XAddress.Require require){
+        final long offsets = XAddress.Offsets(string);
+        if (Status.Valid == XAddress.Validate(offsets,((null != string)?(string.length()):(0)),require))
+            return new XAddress(string,offsets,require);
+        else
+            return null;
+    }
+    /**
+     * Qualify an XMPP address without allocating or throwing an
+     * exception.
+     * 
+     * @param string A part or whole XMPP address
+     * @param require Input components extent requirement
+     * @return Valid, or the reason the input is not acceptable to the
+     * constructor
+     */
+    public final static Status Validate(CharSequence string, XAddress.Require require){
+        if (null == string)
+            return Status.Empty;
+        else
+            return XAddress.Validate(XAddress.Offsets(string),string.length(),require);
+    }
+    /**
+     * Qualify scanned input against a requirement.  Each component
+     * named by the requirement must be present and not empty.
+     * 
+     * @param offsets Result of {@link
+     * #Offsets(java.lang.CharSequence)} for input
+     * @param length Input length
+     * @param require Input components extent requirement
+     * @return Valid, or the reason the input is not acceptable to the
+     * constructor
+     */
+    public final static Status Validate(long offsets, int length, XAddress.Require require){
+        if (0L > offsets)
+            return Status.For(offsets);
+        else if (null == require || XAddress.Count(offsets) <= require.ordinal())
+            return Status.Extent;
+        else {
+            final int indexOfHost = XAddress.IndexOfHost(offsets);
+            final int indexOfSlash = XAddress.IndexOfSlash(offsets);
+            /*
+             * Full requires a resource, Full and Logon a host, and
+             * each an identifier
+             */
+            if (Require.Full == require && (indexOfSlash+1) == length)
+                return Status.ResourceEmpty;
+            else if (Require.Identifier != require &&
+                     (indexOfHost+1) == ((-1 < indexOfSlash)?(indexOfSlash):(length)))
+                return Status.HostEmpty;
+            else if (0 == indexOfHost)
+                return Status.IdentifierEmpty;
+            else
+                return Status.Valid;
+        }
+    }
+    /**
+     * Parse a UTF-8 encoded XMPP address.  Input is scanned and
+     * qualified on bytes before the one decoding copy into the
+     * address string.
+     * 
+     * @param bytes UTF-8 encoded XMPP address
+     * @param offset Start index in bytes
+     * @param length Number of bytes
+     * @param require Input components extent requirement
+     * @exception java.lang.IllegalArgumentException For invalid input
+     */
+    public final static XAddress Decode(byte[] bytes, int offset, int length, XAddress.Require require){
+        final long offsets = XAddress.Offsets(bytes,offset,length);
+        if (Status.Valid != XAddress.Validate(offsets,length,require))
+            throw new IllegalArgumentException(new String(bytes,offset,length,UTF8));
+        else
+            return XAddress.Decode(new String(bytes,offset,length,UTF8),length,offsets,require);
+    }
+    /**
+     * Parse a UTF-8 encoded XMPP address from position to limit.
+     * The buffer position is not modified.  A direct buffer is
+     * scanned and qualified in place, and copied once for decoding.
+     * 
+     * @param buffer UTF-8 encoded XMPP address
+     * @param require Input components extent requirement
+     * @exception java.lang.IllegalArgumentException For invalid input
+     */
+    public final static XAddress Decode(java.nio.ByteBuffer buffer, XAddress.Require require){
+        if (null == buffer)
+            throw new IllegalArgumentException(String.valueOf(buffer));
+        else if (buffer.hasArray())
+            return XAddress.Decode(buffer.array(),(buffer.arrayOffset()+buffer.position()),buffer.remaining(),require);
+        else {
+            final long offsets = XAddress.Offsets(buffer);
+            if (Status.Valid != XAddress.Validate(offsets,buffer.remaining(),require))
+                throw new IllegalArgumentException(UTF8.decode(buffer.duplicate()).toString());
+            else {
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+
+                return XAddress.Decode(new String(bytes,UTF8),bytes.length,offsets,require);
+            }
+        }
+    }
+    /**
+     * Construct from a decoded string with the qualified offsets of
+     * its bytes, which are character offsets when each byte has
+     * decoded to one character.  Otherwise the constructor locates
+     * the delimiters in its pass over the string.
+     */
+    private final static XAddress Decode(String string, int length, long offsets, XAddress.Require require){
+        if (string.length() == length)
+            return new XAddress(string,offsets,require);
+        else
+            return new XAddress(string,require);
+    }
     /**
      * Parse XAddress
      * 
      * @param string XMPP address string
      * @return null, or one, two, or three elements
+     * @see #Offsets(java.lang.CharSequence)
      */
     public final static String[] Scan(String string){
+        final long offsets = XAddress.Offsets(string);
+        if (SCAN_EMPTY > offsets)
+            throw new IllegalArgumentException(string);
+        else {
+            final int indexOfHost = XAddress.IndexOfHost(offsets);
+            final int indexOfSlash = XAddress.IndexOfSlash(offsets);
+
+            switch(XAddress.Count(offsets)){
+            case 1:
+                return new String[]{
+                    string
+                };
+            case 2:
+                return new String[]{
+                    string.substring(0,indexOfHost),
+                    string.substring(indexOfHost+1)
+                };
+            case 3:
+                return new String[]{
+                    string.substring(0,indexOfHost),
+                    string.substring(indexOfHost+1,indexOfSlash),
+                    string.substring(indexOfSlash+1)
+                };
+            default:
+                return null;
+            }
+        }
+    }
+    /**
+     * Locate the '@' and '/' delimiters of an XMPP address without
+     * allocating.  The result packs both delimiter positions into one
+     * value for {@link #IndexOfHost(long)}, {@link
+     * #IndexOfSlash(long)} and {@link #Count(long)}.
+     * 
+     * @param string XMPP address string
+     * @return Non negative delimiter offsets, or {@link #SCAN_EMPTY}
+     * for null or empty input, or the negative ordinal of the {@link
+     * Status} of input not having the form
+     * <code>identifier@host/resource</code>
+     */
+    public final static long Offsets(CharSequence string){
         if (null == string)
-            return null;
+            return SCAN_EMPTY;
         else {
-            final char[] cary = string.toCharArray();
-            final int carlen = cary.length;
+            final int carlen = string.length();
             if (0 < carlen){
                 /*
                  * measure
                  */
                 int indexOfSlash = -1, indexOfHost = -1;
+                boolean duplicate = false;
                 scan:
                 for (int cc = 0; cc < carlen; cc++){
 
-                    switch(cary[cc]){
+                    switch(string.charAt(cc)){
 
                     case '/':
-                        if (0 < indexOfHost && (indexOfHost+1) < cc){
-
-                            indexOfSlash = cc;
-
-                            break scan;
-                        }
-                        else
-                            throw new IllegalArgumentException(string);
+                        indexOfSlash = cc;
+                        break scan;
 
                     case '@':
                         if (-1 == indexOfHost)
                             indexOfHost = cc;
-                        else
-                            throw new IllegalArgumentException(string);
+                        else {
+                            duplicate = true;
+                            break scan;
+                        }
                         break;
                     default:
                         break;
                     }
                 }
-                /*
-                 * cut
-                 */
-                if (-1 < indexOfHost){
-                    if (-1 < indexOfSlash){
-                        return new String[]{
-                            string.substring(0,indexOfHost),
-                            string.substring(indexOfHost+1,indexOfSlash),
-                            string.substring(indexOfSlash+1)
-                        };
-                    }
+                return XAddress.Delimiters(indexOfHost,indexOfSlash,duplicate);
+            }
+            else
+                return SCAN_EMPTY;
+        }
+    }
+    /**
+     * Locate the '@' and '/' delimiters of a UTF-8 encoded XMPP
+     * address without decoding or allocating.  The delimiters are
+     * never found within a multibyte UTF-8 sequence.
+     * 
+     * @param bytes UTF-8 encoded XMPP address
+     * @param offset Start index in bytes
+     * @param length Number of bytes
+     * @return Byte offsets relative to the offset argument, as for
+     * {@link #Offsets(java.lang.CharSequence)}
+     */
+    public final static long Offsets(byte[] bytes, int offset, int length){
+        if (null == bytes || 1 > length)
+            return SCAN_EMPTY;
+        else {
+            int indexOfSlash = -1, indexOfHost = -1;
+            boolean duplicate = false;
+            scan:
+            for (int cc = 0; cc < length; cc++){
+
+                switch(bytes[offset+cc]){
+
+                case '/':
+                    indexOfSlash = cc;
+                    break scan;
+
+                case '@':
+                    if (-1 == indexOfHost)
+                        indexOfHost = cc;
                     else {
-                        return new String[]{
-                            string.substring(0,indexOfHost),
-                            string.substring(indexOfHost+1)
-                        };
+                        duplicate = true;
+                        break scan;
                     }
+                    break;
+                default:
+                    break;
                 }
-                else {
-                    return new String[]{
-                        string
-                    };
+            }
+            return XAddress.Delimiters(indexOfHost,indexOfSlash,duplicate);
+        }
+    }
+    /**
+     * Locate the '@' and '/' delimiters of a UTF-8 encoded XMPP
+     * address from position to limit without decoding or
+     * allocating.  The buffer position is not modified.
+     * 
+     * @param buffer UTF-8 encoded XMPP address
+     * @return Byte offsets relative to the buffer position, as for
+     * {@link #Offsets(java.lang.CharSequence)}
+     */
+    public final static long Offsets(java.nio.ByteBuffer buffer){
+        if (null == buffer)
+            return SCAN_EMPTY;
+        else if (buffer.hasArray())
+            return XAddress.Offsets(buffer.array(),(buffer.arrayOffset()+buffer.position()),buffer.remaining());
+        else {
+            final int position = buffer.position();
+            final int length = buffer.remaining();
+            if (1 > length)
+                return SCAN_EMPTY;
+            else {
+                int indexOfSlash = -1, indexOfHost = -1;
+                boolean duplicate = false;
+                scan:
+                for (int cc = 0; cc < length; cc++){
+
+                    switch(buffer.get(position+cc)){
+
+                    case '/':
+                        indexOfSlash = cc;
+                        break scan;
+
+                    case '@':
+                        if (-1 == indexOfHost)
+                            indexOfHost = cc;
+                        else {
+                            duplicate = true;
+                            break scan;
+                        }
+                        break;
+                    default:
+                        break;
+                    }
                 }
+                return XAddress.Delimiters(indexOfHost,indexOfSlash,duplicate);
             }
-            else
-                return null;
         }
     }
+    /**
+     * Locate the '@' and '/' delimiters of an XMPP address into a
+     * caller's array without allocating.
+     * 
+     * @param string XMPP address string
+     * @param offsets Array of two or more elements to receive the
+     * index of '@' and the index of '/', or negative one for each
+     * delimiter not present
+     * @return Count of components, from one to three, or zero for
+     * null or empty input, or negative one for invalid input
+     */
+    public final static int Offsets(CharSequence string, int[] offsets){
+        final long scan = XAddress.Offsets(string);
+        if (SCAN_EMPTY > scan)
+            return -1;
+        else {
+            offsets[0] = XAddress.IndexOfHost(scan);
+            offsets[1] = XAddress.IndexOfSlash(scan);
+            return XAddress.Count(scan);
+        }
+    }
+    /**
+     * @param indexOfHost Index of '@', or negative one
+     * @param indexOfSlash Index of '/', or negative one
+     * @return Packed delimiter offsets
+     */
+    public final static long Offsets(int indexOfHost, int indexOfSlash){
+
+        return (((long)(indexOfHost+1))<<32)|(((long)(indexOfSlash+1)) & 0xFFFFFFFFL);
+    }
+    /**
+     * @param offsets Result of {@link #Offsets(java.lang.CharSequence)}
+     * @return Index of '@', or negative one
+     */
+    public final static int IndexOfHost(long offsets){
+        if (0L > offsets)
+            return -1;
+        else
+            return ((int)(offsets>>>32))-1;
+    }
+    /**
+     * @param offsets Result of {@link #Offsets(java.lang.CharSequence)}
+     * @return Index of '/', or negative one
+     */
+    public final static int IndexOfSlash(long offsets){
+        if (0L > offsets)
+            return -1;
+        else
+            return ((int)(offsets & 0xFFFFFFFFL))-1;
+    }
+    /**
+     * @param indexOfHost Index of the first '@', or negative one
+     * @param indexOfSlash Index of the first '/', or negative one
+     * @param duplicate A second '@' precedes any '/'
+     * @return Packed delimiter offsets, or negative status ordinal
+     */
+    final static long Delimiters(int indexOfHost, int indexOfSlash, boolean duplicate){
+        if (duplicate)
+            return -(Status.HostDuplicate.ordinal());
+        else if (-1 == indexOfSlash || (0 < indexOfHost && (indexOfHost+1) < indexOfSlash))
+            return XAddress.Offsets(indexOfHost,indexOfSlash);
+        else
+            return XAddress.Invalid(indexOfHost,indexOfSlash);
+    }
+    /**
+     * @param indexOfHost Index of '@', or negative one
+     * @param indexOfSlash Index of an unacceptable '/'
+     * @return Negative status ordinal
+     */
+    private final static long Invalid(int indexOfHost, int indexOfSlash){
+        if (-1 == indexOfHost)
+            return -(Status.HostMissing.ordinal());
+        else if (0 == indexOfHost)
+            return -(Status.IdentifierEmpty.ordinal());
+        else
+            return -(Status.HostEmpty.ordinal());
+    }
+    /**
+     * @param offsets Result of {@link #Offsets(java.lang.CharSequence)}
+     * @return Zero for empty or invalid input, one for identifier,
+     * two for logon, or three for full
+     */
+    public final static int Count(long offsets){
+        if (0L > offsets)
+            return 0;
+        else if (-1 < XAddress.IndexOfSlash(offsets))
+            return 3;
+        else if (-1 < XAddress.IndexOfHost(offsets))
+            return 2;
+        else
+            return 1;
+    }
+    /**
+     * Split a resource into kind and session.  A dotted resource is
+     * split at its last '.', having the session following the '.'.
+     * A resource having a {@link XAddressKinds registered kind}
+     * followed by hex is split following the kind.  Otherwise the
+     * session is the trailing run of hex characters.
+     * 
+     * @param string Resource
+     * @return Kind and session, or null for a resource that is empty
+     * or entirely hex
+     */
     public final static String[] Resource(String string){
         if (null != string){
             final int dot = string.lastIndexOf('.');
@@ -403,44 +1200,58 @@ public class XAddress
                 };
             }
             else {
-                final char[] cary = string.toCharArray();
-                final int carlen = cary.length;
-                if (0 < carlen){
-
-                    for (int cc = (carlen-1); -1 < cc; cc--){
-
-                        char ch = cary[cc];
-
-                        if (IsNotHex(ch)){
-
-                            final int end;
-                            /*
-                             * String terminal in "android" is in HEX
-                             */
-                            if (5 == cc && 'i' == ch && 'a' == cary[0] && 'n' == cary[1])
-                                end = (cc + 2);
-                            /*
-                             * String terminal in "iPhone" is in HEX
-                             */
-                            else if (4 == cc && 'n' == ch && 'i' == cary[0] && 'P' == cary[1])
-                                end = (cc + 2);
-                            /*
-                             * Others not having a HEX terminal
-                             */
-                            else
-                                end = (cc + 1);
-
-                            return new String[]{
-                                string.substring(0,end),
-                                string.substring(end)
-                            };
-                        }
-                    }
+                final int length = string.length();
+                int notHex = (length-1);
+                while (-1 < notHex && !IsNotHex(string.charAt(notHex))){
+                    notHex -= 1;
                 }
+                final long match = XAddressKinds.Match(string,0,length,(notHex+1));
+                final int end;
+                if (-1 < match)
+                    end = (int)match;
+                else if (-1 < notHex)
+                    end = (notHex+1);
+                else
+                    return null;
+
+                return new String[]{
+                    string.substring(0,end),
+                    string.substring(end)
+                };
             }
         }
         return null;
     }
+    /**
+     * @return Number of digits of a session of lower case hex having
+     * no more than sixteen digits, or negative one
+     */
+    private final static int SessionDigits(String session){
+        final int digits = session.length();
+        if (0 < digits && 16 >= digits){
+            for (int cc = 0; cc < digits; cc++){
+                final char ch = session.charAt(cc);
+                if (('A' <= ch && 'F' >= ch) || -1 == XAddress.Hex(ch))
+                    return -1;
+            }
+            return digits;
+        }
+        else
+            return -1;
+    }
+    /**
+     * @return Value of a hex digit, or negative one
+     */
+    private final static int Hex(char ch){
+        if ('0' <= ch && '9' >= ch)
+            return (ch - '0');
+        else if ('a' <= ch && 'f' >= ch)
+            return (ch - 'a' + 10);
+        else if ('A' <= ch && 'F' >= ch)
+            return (ch - 'A' + 10);
+        else
+            return -1;
+    }
     public final static boolean IsNotHex(char ch){
         if ('a' <= ch && 'f' >= ch)
             return false;
@@ -0,0 +1,197 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact XMPP address in its UTF-8 wire form, scanned and
+ * qualified on bytes as in {@link XAddress#Offsets(byte[],int,int)}.
+ * Components are decoded to strings only on request.
+ *
+ * <h3>Identity</h3>
+ *
+ * <p> The equals, hash code and comparison methods employ the
+ * address bytes, as for a key over the wire form.  The roster
+ * identity of {@link XAddress} is available from {@link
+ * #toXAddress()}. </p>
+ *
+ * @see XAddress
+ * @author jdp
+ */
+public class XAddressBytes
+    extends java.lang.Object
+    implements java.io.Serializable,
+               java.lang.Comparable<XAddressBytes>
+{
+    public final static long serialVersionUID = 1L;
+
+
+    private final byte[] bytes;
+
+    private final int indexOfHost, indexOfSlash;
+
+    private transient int hashCode;
+
+
+    /**
+     * @param buffer UTF-8 encoded XMPP address from position to
+     * limit.  The buffer position is not modified.
+     * @param require Input components extent requirement
+     */
+    public XAddressBytes(ByteBuffer buffer, XAddress.Require require){
+        super();
+        final long offsets = XAddress.Offsets(buffer);
+        if (XAddress.Status.Valid != XAddress.Validate(offsets,((null != buffer)?(buffer.remaining()):(0)),require))
+            throw new IllegalArgumentException();
+        else {
+            this.bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(this.bytes);
+            this.indexOfHost = XAddress.IndexOfHost(offsets);
+            this.indexOfSlash = XAddress.IndexOfSlash(offsets);
+        }
+    }
+    /**
+     * @param bytes UTF-8 encoded XMPP address
+     * @param offset Start index in bytes
+     * @param length Number of bytes
+     * @param require Input components extent requirement
+     */
+    public XAddressBytes(byte[] bytes, int offset, int length, XAddress.Require require){
+        super();
+        final long offsets = XAddress.Offsets(bytes,offset,length);
+        if (XAddress.Status.Valid != XAddress.Validate(offsets,length,require))
+            throw new IllegalArgumentException();
+        else {
+            this.bytes = new byte[length];
+            System.arraycopy(bytes,offset,this.bytes,0,length);
+            this.indexOfHost = XAddress.IndexOfHost(offsets);
+            this.indexOfSlash = XAddress.IndexOfSlash(offsets);
+        }
+    }
+
+
+    public boolean hasHost(){
+        return (-1 < this.indexOfHost);
+    }
+    public boolean hasResource(){
+        return (-1 < this.indexOfSlash);
+    }
+    /**
+     * @return Number of bytes
+     */
+    public int length(){
+        return this.bytes.length;
+    }
+    public byte byteAt(int index){
+        return this.bytes[index];
+    }
+    /**
+     * @param buffer Destination of the address bytes
+     * @return Destination buffer
+     */
+    public ByteBuffer get(ByteBuffer buffer){
+        return buffer.put(this.bytes);
+    }
+    public String identifier(){
+        if (-1 < this.indexOfHost)
+            return this.decode(0,this.indexOfHost);
+        else
+            return this.decode(0,this.bytes.length);
+    }
+    /**
+     * @return Null for an identifier
+     */
+    public String host(){
+        if (-1 < this.indexOfSlash)
+            return this.decode(this.indexOfHost+1,this.indexOfSlash);
+        else if (-1 < this.indexOfHost)
+            return this.decode(this.indexOfHost+1,this.bytes.length);
+        else
+            return null;
+    }
+    /**
+     * @return Null for an identifier or logon
+     */
+    public String resource(){
+        if (-1 < this.indexOfSlash)
+            return this.decode(this.indexOfSlash+1,this.bytes.length);
+        else
+            return null;
+    }
+    /**
+     * @return Null for an identifier
+     */
+    public String logon(){
+        if (-1 < this.indexOfSlash)
+            return this.decode(0,this.indexOfSlash);
+        else if (-1 < this.indexOfHost)
+            return this.decode(0,this.bytes.length);
+        else
+            return null;
+    }
+    public XAddress toXAddress(){
+        return XAddress.Decode(this.bytes,0,this.bytes.length,XAddress.Require.Identifier);
+    }
+    public int hashCode(){
+        int hashCode = this.hashCode;
+        if (0 == hashCode){
+            final byte[] bytes = this.bytes;
+            final int len = bytes.length;
+            for (int cc = 0; cc < len; cc++){
+                hashCode = (31*hashCode)+bytes[cc];
+            }
+            this.hashCode = hashCode;
+        }
+        return hashCode;
+    }
+    public String toString(){
+        return this.decode(0,this.bytes.length);
+    }
+    public boolean equals(Object that){
+        if (this == that)
+            return true;
+        else if (that instanceof XAddressBytes)
+            return java.util.Arrays.equals(this.bytes,((XAddressBytes)that).bytes);
+        else
+            return false;
+    }
+    /**
+     * Unsigned byte order is code point order in UTF-8.
+     */
+    public int compareTo(XAddressBytes that){
+        if (this == that)
+            return 0;
+        else {
+            final byte[] a = this.bytes;
+            final byte[] b = that.bytes;
+            final int len = Math.min(a.length,b.length);
+            for (int cc = 0; cc < len; cc++){
+                final int ac = (a[cc] & 0xFF);
+                final int bc = (b[cc] & 0xFF);
+                if (ac != bc)
+                    return (ac - bc);
+            }
+            return (a.length - b.length);
+        }
+    }
+    private String decode(int start, int end){
+        return new String(this.bytes,start,(end-start),XAddress.UTF8);
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of parsed addresses keyed by input string.
+ *
+ * <h3>Admission</h3>
+ *
+ * <p> New entries enter a small window in least recently used
+ * order.  An entry leaving the window is admitted to the main space
+ * only when its estimated frequency of use is greater than that of
+ * the least recently used entry of the main space, which it then
+ * replaces.  Frequencies are estimated in a count-min sketch of four
+ * bit counters that are halved periodically.  A stream of addresses
+ * seen once does not displace the working set. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> The cache is divided into independently locked segments
+ * selected by hash code, each having its own window, main space,
+ * sketch and counters.  Input is parsed without holding a lock. </p>
+ *
+ * @see XAddress#Of(java.lang.String)
+ * @author jdp
+ */
+public class XAddressCache
+    extends java.lang.Object
+{
+    /**
+     * Maximum size of the default cache from system property
+     * <code>xma.XAddressCache.size</code>
+     */
+    public final static int SIZE = Integer.getInteger("xma.XAddressCache.size",65536).intValue();
+    /**
+     * The cache employed by {@link XAddress#Of(java.lang.String)}
+     */
+    public final static XAddressCache Default = new XAddressCache(SIZE);
+
+
+    /**
+     * Frequency estimate over hash codes in four rows of four bit
+     * counters
+     */
+    private final static class Sketch {
+
+        private final static long[] SEED = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L,
+            0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+        };
+
+
+        private final long[] table;
+
+        private final int mask, sample;
+
+        private int additions;
+
+
+        Sketch(int capacity){
+            super();
+            int length = 8;
+            while (length < capacity){
+                length <<= 1;
+            }
+            this.table = new long[length];
+            this.mask = ((length << 4)-1);
+            this.sample = (10 * Math.max(capacity,1));
+        }
+
+
+        int frequency(int hash){
+            int frequency = 15;
+            for (int row = 0; row < 4; row++){
+                frequency = Math.min(frequency,this.counter(this.index(hash,row)));
+            }
+            return frequency;
+        }
+        void increment(int hash){
+            for (int row = 0; row < 4; row++){
+                final int index = this.index(hash,row);
+                if (15 > this.counter(index))
+                    this.table[index >>> 4] += (1L << ((index & 15) << 2));
+            }
+            if (this.sample == ++this.additions)
+                this.reset();
+        }
+        private int counter(int index){
+            return (int)((this.table[index >>> 4] >>> ((index & 15) << 2)) & 0xFL);
+        }
+        private int index(int hash, int row){
+            long h = ((hash + SEED[row]) * SEED[row]);
+            h += (h >>> 32);
+            return (((int)h) & this.mask);
+        }
+        /**
+         * Halve all counters
+         */
+        private void reset(){
+            final long[] table = this.table;
+            for (int cc = 0, len = table.length; cc < len; cc++){
+                table[cc] = ((table[cc] >>> 1) & 0x7777777777777777L);
+            }
+            this.additions >>>= 1;
+        }
+    }
+    /**
+     * Window and main spaces in least recently used order
+     */
+    private final static class Segment {
+
+        final LinkedHashMap<String,XAddress> window, main;
+
+        final int windowCapacity, mainCapacity;
+
+        final Sketch sketch;
+
+        long hits, misses, evictions;
+
+
+        Segment(int capacity){
+            super();
+            /*
+             * A segment of capacity one has only its window
+             */
+            this.windowCapacity = Math.max(1,(capacity / 100));
+            this.mainCapacity = (capacity - this.windowCapacity);
+            this.window = new LinkedHashMap<String,XAddress>(16,0.75f,true);
+            this.main = new LinkedHashMap<String,XAddress>(16,0.75f,true);
+            this.sketch = new Sketch(capacity);
+        }
+
+
+        XAddress get(String key, int hash){
+            this.sketch.increment(hash);
+
+            XAddress value = this.window.get(key);
+            if (null == value)
+                value = this.main.get(key);
+
+            if (null != value)
+                this.hits += 1;
+            else
+                this.misses += 1;
+
+            return value;
+        }
+        XAddress put(String key, XAddress value){
+            final XAddress present = this.window.get(key);
+            if (null != present)
+                return present;
+            else {
+                final XAddress main = this.main.get(key);
+                if (null != main)
+                    return main;
+            }
+            this.window.put(key,value);
+
+            if (this.windowCapacity < this.window.size()){
+                /*
+                 * Candidate for admission from the window
+                 */
+                final Iterator<Map.Entry<String,XAddress>> windowOrder = this.window.entrySet().iterator();
+                final Map.Entry<String,XAddress> candidate = windowOrder.next();
+                windowOrder.remove();
+
+                if (this.mainCapacity > this.main.size())
+
+                    this.main.put(candidate.getKey(),candidate.getValue());
+
+                else if (0 == this.mainCapacity)
+
+                    this.evictions += 1;
+                else {
+                    final Iterator<Map.Entry<String,XAddress>> mainOrder = this.main.entrySet().iterator();
+                    final Map.Entry<String,XAddress> victim = mainOrder.next();
+
+                    if (this.sketch.frequency(candidate.getKey().hashCode()) >
+                        this.sketch.frequency(victim.getKey().hashCode()))
+                    {
+                        mainOrder.remove();
+                        this.main.put(candidate.getKey(),candidate.getValue());
+                    }
+                    this.evictions += 1;
+                }
+            }
+            return value;
+        }
+        int size(){
+            return (this.window.size() + this.main.size());
+        }
+        void clear(){
+            this.window.clear();
+            this.main.clear();
+        }
+    }
+
+
+    private final Segment[] segments;
+
+    private final int mask;
+
+    public final int maximum;
+
+
+    /**
+     * @param maximum Maximum number of addresses
+     */
+    public XAddressCache(int maximum){
+        this(maximum,XAddressPool.CONCURRENCY);
+    }
+    /**
+     * @param maximum Maximum number of addresses
+     * @param concurrency Number of independently locked segments,
+     * reduced to a power of two that leaves each segment a useful
+     * capacity
+     */
+    public XAddressCache(int maximum, int concurrency){
+        super();
+        if (1 > maximum)
+            throw new IllegalArgumentException(String.valueOf(maximum));
+        else {
+            int count = 1;
+            while ((count << 1) <= concurrency && 64 <= (maximum / (count << 1))){
+                count <<= 1;
+            }
+            this.segments = new Segment[count];
+            for (int cc = 0; cc < count; cc++){
+                this.segments[cc] = new Segment(maximum / count);
+            }
+            this.mask = (count-1);
+            this.maximum = maximum;
+        }
+    }
+
+
+    /**
+     * @param string A part or whole XMPP address
+     * @return Cached address
+     * @exception java.lang.IllegalArgumentException For invalid input
+     */
+    public XAddress get(String string){
+        return this.get(string,XAddress.Require.Identifier);
+    }
+    /**
+     * @param string A part or whole XMPP address
+     * @param require Input components extent requirement
+     * @return Cached address
+     * @exception java.lang.IllegalArgumentException For invalid input
+     */
+    public XAddress get(String string, XAddress.Require require){
+        if (null == string || null == require)
+            throw new IllegalArgumentException(string);
+        else {
+            final int hash = string.hashCode();
+            final Segment segment = this.segment(hash);
+            XAddress value;
+            synchronized(segment){
+                value = segment.get(string,hash);
+            }
+            if (null != value){
+                if (XAddressCache.Satisfies(value,require))
+                    return value;
+                else
+                    throw new IllegalArgumentException(string);
+            }
+            else {
+                value = new XAddress(string,require);
+                synchronized(segment){
+                    return segment.put(string,value);
+                }
+            }
+        }
+    }
+    /**
+     * @return Number of cached addresses
+     */
+    public int size(){
+        int size = 0;
+        for (Segment segment : this.segments){
+            synchronized(segment){
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+    /**
+     * @return Number of lookups satisfied from the cache
+     */
+    public long hits(){
+        long count = 0L;
+        for (Segment segment : this.segments){
+            synchronized(segment){
+                count += segment.hits;
+            }
+        }
+        return count;
+    }
+    /**
+     * @return Number of lookups requiring a parse
+     */
+    public long misses(){
+        long count = 0L;
+        for (Segment segment : this.segments){
+            synchronized(segment){
+                count += segment.misses;
+            }
+        }
+        return count;
+    }
+    /**
+     * @return Number of addresses dropped from the cache, or refused
+     * admission to its main space
+     */
+    public long evictions(){
+        long count = 0L;
+        for (Segment segment : this.segments){
+            synchronized(segment){
+                count += segment.evictions;
+            }
+        }
+        return count;
+    }
+    public void clear(){
+        for (Segment segment : this.segments){
+            synchronized(segment){
+                segment.clear();
+            }
+        }
+    }
+    public String toString(){
+        return "hits: "+this.hits()+", misses: "+this.misses()+", evictions: "+this.evictions()+", size: "+this.size();
+    }
+    private Segment segment(int hash){
+        hash ^= (hash >>> 16);
+        hash ^= (hash >>> 7);
+        return this.segments[hash & this.mask];
+    }
+
+
+    /**
+     * @param address A valid address
+     * @param require Input components extent requirement
+     * @return The address would be accepted by its constructor under
+     * the requirement
+     */
+    private final static boolean Satisfies(XAddress address, XAddress.Require require){
+        switch(require){
+        case Full:
+            return (null != address.resource && 0 < address.resource.length());
+        case Logon:
+            return (null != address.host && 0 < address.host.length());
+        default:
+            return true;
+        }
+    }
+}
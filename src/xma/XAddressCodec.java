@@ -0,0 +1,391 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Encoding and decoding of addresses with NIO buffers, in plain UTF-8
+ * or in a length prefixed binary form.
+ *
+ * <h3>Binary</h3>
+ * <pre>
+ * address     varint byte length, UTF-8
+ * </pre>
+ *
+ * <p> Characters are encoded directly into the buffer, without
+ * intermediate strings or byte arrays.  An unpaired surrogate is
+ * encoded as '?', as by {@link
+ * java.lang.String#getBytes(java.nio.charset.Charset)}.  Decoding
+ * qualifies the address on its bytes before decoding, as by {@link
+ * XAddress#Decode(java.nio.ByteBuffer,XAddress.Require)}. </p>
+ *
+ * <h3>Channels</h3>
+ *
+ * <p> A sequence of addresses is written to a channel in the binary
+ * form through blocks of {@link #BLOCK} bytes, with one gathering
+ * write of all blocks filled when the channel is a {@link
+ * java.nio.channels.GatheringByteChannel}. </p>
+ *
+ * @see XAddressSerial
+ * @author jdp
+ */
+public final class XAddressCodec
+    extends java.lang.Object
+{
+    /**
+     * Size of channel write blocks
+     */
+    public final static int BLOCK = 0x2000;
+    /**
+     * Number of channel write blocks gathered in one write
+     */
+    public final static int GATHER = 16;
+
+
+    /**
+     * @param string Characters
+     * @return Number of bytes in UTF-8
+     */
+    public final static int Length(CharSequence string){
+        int length = 0;
+        for (int cc = 0, len = string.length(); cc < len; cc++){
+            final char ch = string.charAt(cc);
+            if (0x80 > ch)
+                length += 1;
+            else if (0x800 > ch)
+                length += 2;
+            else if (Character.isHighSurrogate(ch) && (cc+1) < len &&
+                     Character.isLowSurrogate(string.charAt(cc+1)))
+            {
+                length += 4;
+                cc += 1;
+            }
+            else if (Character.isSurrogate(ch))
+                length += 1;
+            else
+                length += 3;
+        }
+        return length;
+    }
+    /**
+     * @param address Address
+     * @return Number of bytes in the binary form
+     */
+    public final static int Size(XAddress address){
+        final int length = Length(address);
+        return (VarintSize(length) + length);
+    }
+    /**
+     * Write the UTF-8 encoding of the address at the buffer
+     * position.
+     *
+     * @exception java.nio.BufferOverflowException With the buffer
+     * unchanged
+     */
+    public final static void EncodeUTF8(CharSequence address, ByteBuffer buffer){
+        final int length = Length(address);
+        if (length > buffer.remaining())
+            throw new BufferOverflowException();
+        else
+            Put(address,buffer);
+    }
+    /**
+     * Read an address from the UTF-8 from buffer position to limit,
+     * and move the position to the limit.
+     *
+     * @exception java.lang.IllegalArgumentException For invalid
+     * input, with the buffer unchanged
+     */
+    public final static XAddress DecodeUTF8(ByteBuffer buffer, XAddress.Require require){
+        final XAddress address = XAddress.Decode(buffer,require);
+        buffer.position(buffer.limit());
+        return address;
+    }
+    /**
+     * Write the binary form of the address at the buffer position.
+     *
+     * @exception java.nio.BufferOverflowException With the buffer
+     * unchanged
+     */
+    public final static void Encode(XAddress address, ByteBuffer buffer){
+        final int length = Length(address);
+        if ((VarintSize(length) + length) > buffer.remaining())
+            throw new BufferOverflowException();
+        else {
+            PutVarint(length,buffer);
+            Put(address,buffer);
+        }
+    }
+    /**
+     * Write the binary form of addresses at the buffer position, as
+     * many as the buffer has room for.
+     *
+     * @return Number of addresses written
+     */
+    public final static int Encode(XAddress[] addresses, int offset, int count, ByteBuffer buffer){
+        for (int cc = 0; cc < count; cc++){
+            final XAddress address = addresses[offset+cc];
+            final int length = Length(address);
+            if ((VarintSize(length) + length) > buffer.remaining())
+                return cc;
+            else {
+                PutVarint(length,buffer);
+                Put(address,buffer);
+            }
+        }
+        return count;
+    }
+    /**
+     * @return Binary form of addresses in a buffer from zero to the
+     * limit
+     */
+    public final static ByteBuffer Encode(XAddress[] addresses){
+        int size = 0;
+        for (XAddress address : addresses){
+            size += Size(address);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        Encode(addresses,0,addresses.length,buffer);
+        buffer.flip();
+        return buffer;
+    }
+    /**
+     * @return Binary form of addresses in a buffer from zero to the
+     * limit
+     */
+    public final static ByteBuffer Encode(Iterable<? extends XAddress> addresses){
+        int size = 0;
+        for (XAddress address : addresses){
+            size += Size(address);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (XAddress address : addresses){
+            Encode(address,buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+    /**
+     * Read the binary form of an address at the buffer position.
+     *
+     * @return Address, or null when the buffer does not hold the
+     * whole of an address, with the buffer unchanged
+     * @exception java.lang.IllegalArgumentException For invalid
+     * input, with the buffer unchanged
+     */
+    public final static XAddress Decode(ByteBuffer buffer, XAddress.Require require){
+        final int position = buffer.position();
+        try {
+            final int length = GetVarint(buffer);
+            if (-1 == length || length > buffer.remaining()){
+                buffer.position(position);
+                return null;
+            }
+            else {
+                final int start = buffer.position();
+                final ByteBuffer content = buffer.duplicate();
+                content.limit(start + length);
+
+                final XAddress address = XAddress.Decode(content,require);
+                buffer.position(start + length);
+                return address;
+            }
+        }
+        catch (IllegalArgumentException exc){
+            buffer.position(position);
+            throw exc;
+        }
+    }
+    /**
+     * Read the binary form of addresses from buffer position to
+     * limit.  The position is left following the last whole address.
+     *
+     * @return Addresses read
+     */
+    public final static XAddress[] DecodeAll(ByteBuffer buffer, XAddress.Require require){
+        final ArrayList<XAddress> list = new ArrayList<XAddress>();
+        XAddress address;
+        while (null != (address = Decode(buffer,require))){
+            list.add(address);
+        }
+        return list.toArray(new XAddress[list.size()]);
+    }
+    /**
+     * Write the binary form of addresses to a channel.
+     *
+     * @return Number of bytes written
+     */
+    public final static long Write(WritableByteChannel channel, XAddress[] addresses)
+        throws IOException
+    {
+        return Write(channel,java.util.Arrays.asList(addresses));
+    }
+    /**
+     * Write the binary form of addresses to a channel.
+     *
+     * @return Number of bytes written
+     */
+    public final static long Write(WritableByteChannel channel, Iterable<? extends XAddress> addresses)
+        throws IOException
+    {
+        final ByteBuffer[] blocks = new ByteBuffer[GATHER];
+        final Iterator<? extends XAddress> iterator = addresses.iterator();
+        long written = 0L;
+        XAddress pending = null;
+        while (null != pending || iterator.hasNext()){
+            /*
+             * Fill blocks
+             */
+            int count = 0;
+            ByteBuffer block = null;
+            while (true){
+                if (null == pending){
+                    if (iterator.hasNext())
+                        pending = iterator.next();
+                    else
+                        break;
+                }
+                final int size = Size(pending);
+                if (null == block || size > block.remaining()){
+                    if (null != block){
+                        block.flip();
+                        block = null;
+                        if (GATHER == ++count)
+                            break;
+                    }
+                    block = blocks[count];
+                    if (null == block || block.capacity() < size){
+                        block = ByteBuffer.allocateDirect(Math.max(BLOCK,size));
+                        blocks[count] = block;
+                    }
+                    else
+                        block.clear();
+                }
+                Encode(pending,block);
+                pending = null;
+            }
+            if (null != block){
+                block.flip();
+                count += 1;
+            }
+            /*
+             * Write blocks
+             */
+            if (channel instanceof GatheringByteChannel){
+                final GatheringByteChannel gathering = (GatheringByteChannel)channel;
+                int first = 0;
+                while (first < count){
+                    written += gathering.write(blocks,first,count-first);
+                    while (first < count && !blocks[first].hasRemaining()){
+                        first += 1;
+                    }
+                }
+            }
+            else {
+                for (int cc = 0; cc < count; cc++){
+                    final ByteBuffer b = blocks[cc];
+                    while (b.hasRemaining()){
+                        written += channel.write(b);
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+
+    private final static void Put(CharSequence string, ByteBuffer buffer){
+        for (int cc = 0, len = string.length(); cc < len; cc++){
+            final char ch = string.charAt(cc);
+            if (0x80 > ch)
+                buffer.put((byte)ch);
+            else if (0x800 > ch){
+                buffer.put((byte)(0xC0 | (ch >> 6)));
+                buffer.put((byte)(0x80 | (ch & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(ch) && (cc+1) < len &&
+                     Character.isLowSurrogate(string.charAt(cc+1)))
+            {
+                final int cp = Character.toCodePoint(ch,string.charAt(++cc));
+                buffer.put((byte)(0xF0 | (cp >> 18)));
+                buffer.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte)(0x80 | (cp & 0x3F)));
+            }
+            else if (Character.isSurrogate(ch))
+                buffer.put((byte)'?');
+            else {
+                buffer.put((byte)(0xE0 | (ch >> 12)));
+                buffer.put((byte)(0x80 | ((ch >> 6) & 0x3F)));
+                buffer.put((byte)(0x80 | (ch & 0x3F)));
+            }
+        }
+    }
+    private final static int VarintSize(int value){
+        int size = 1;
+        while (0x7F < value){
+            value >>>= 7;
+            size += 1;
+        }
+        return size;
+    }
+    private final static void PutVarint(int value, ByteBuffer buffer){
+        while (0x7F < value){
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+    /**
+     * @return Value, or negative one for an incomplete varint
+     * @exception java.lang.IllegalArgumentException For a varint
+     * exceeding thirty one bits
+     */
+    private final static int GetVarint(ByteBuffer buffer){
+        int value = 0;
+        for (int shift = 0; ; shift += 7){
+            if (!buffer.hasRemaining())
+                return -1;
+            else if (28 < shift)
+                throw new IllegalArgumentException("length");
+            else {
+                final int b = (buffer.get() & 0xFF);
+                value |= ((b & 0x7F) << shift);
+                if (0 == (b & 0x80)){
+                    if (0 > value)
+                        throw new IllegalArgumentException("length");
+                    else
+                        return value;
+                }
+            }
+        }
+    }
+
+
+    private XAddressCodec(){
+        super();
+    }
+}
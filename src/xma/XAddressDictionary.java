@@ -0,0 +1,319 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A dictionary of address component strings assigns each distinct
+ * string a small integer identifier, in order from zero, and
+ * retains one canonical instance of the string.
+ *
+ * <h3>Lookup</h3>
+ *
+ * <p> Lookup is by a region of a character sequence, so that a
+ * component present in the dictionary is found without creating its
+ * substring. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> Readers are not locked.  Writers are serialized on the
+ * dictionary. </p>
+ *
+ * <h3>Bound</h3>
+ *
+ * <p> The dictionary has a maximum size, beyond which strings are
+ * not assigned an identifier, and a full dictionary is not locked.
+ * Strings are added only by an explicit registration with {@link
+ * #id(java.lang.String) id}, and input from the network is only
+ * looked up, so that it may not fill the dictionary. </p>
+ *
+ * @author jdp
+ */
+public class XAddressDictionary
+    extends java.lang.Object
+{
+    /**
+     * Dictionary of {@link XAddress#host} components registered by the
+     * application, having maximum size from system property
+     * <code>xma.XAddressDictionary.hosts</code>
+     */
+    public final static XAddressDictionary Hosts = new XAddressDictionary(Integer.getInteger("xma.XAddressDictionary.hosts",0x10000).intValue());
+    /**
+     * Dictionary of {@link XAddress#resourceKind} components registered
+     * in {@link XAddressKinds}, having maximum size from system
+     * property <code>xma.XAddressDictionary.kinds</code>.  Kinds are
+     * looked up with {@link
+     * XAddressKinds#Lookup(java.lang.CharSequence,int,int)}, which
+     * initializes the registry.
+     */
+    public final static XAddressDictionary Kinds = new XAddressDictionary(Integer.getInteger("xma.XAddressDictionary.kinds",0x1000).intValue());
+
+
+    private final static class Entry {
+
+        final String string;
+
+        final int hash, id;
+
+
+        Entry(String string, int hash, int id){
+            super();
+            this.string = string;
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+    /**
+     * Open addressing table of entries
+     */
+    private final static class Table {
+
+        final AtomicReferenceArray<Entry> entries;
+
+        final int mask;
+
+
+        Table(int capacity){
+            super();
+            this.entries = new AtomicReferenceArray<Entry>(capacity);
+            this.mask = (capacity-1);
+        }
+    }
+
+
+    public final int maximum;
+
+    private volatile Table table;
+
+    private volatile String[] list;
+
+    private volatile int count;
+
+
+    /**
+     * @param maximum Maximum number of strings
+     */
+    public XAddressDictionary(int maximum){
+        super();
+        if (1 > maximum)
+            throw new IllegalArgumentException(String.valueOf(maximum));
+        else {
+            this.maximum = maximum;
+            this.table = new Table(16);
+            this.list = new String[8];
+        }
+    }
+
+
+    /**
+     * @return Number of strings
+     */
+    public int size(){
+        return this.count;
+    }
+    /**
+     * @param id Identifier from this dictionary
+     * @return Canonical string
+     * @exception java.lang.ArrayIndexOutOfBoundsException For an
+     * identifier not from this dictionary
+     */
+    public String get(int id){
+        if (-1 < id && id < this.count)
+            return this.list[id];
+        else
+            throw new ArrayIndexOutOfBoundsException(id);
+    }
+    /**
+     * @param string Component string
+     * @return Identifier, or negative one when not present
+     */
+    public int lookup(CharSequence string){
+        return this.lookup(string,0,string.length());
+    }
+    /**
+     * @param string Source sequence
+     * @param start Component start offset (inclusive)
+     * @param end Component end offset (exclusive)
+     * @return Identifier, or negative one when not present
+     */
+    public int lookup(CharSequence string, int start, int end){
+        return this.lookup(string,start,end,XAddressDictionary.Hash(string,start,end));
+    }
+    /**
+     * @param string Source sequence
+     * @param start Component start offset (inclusive)
+     * @param end Component end offset (exclusive)
+     * @param hash Result of {@link #Hash(java.lang.CharSequence,int,int)
+     * Hash} for the region
+     * @return Identifier, or negative one when not present
+     */
+    public int lookup(CharSequence string, int start, int end, int hash){
+        final Table table = this.table;
+        final AtomicReferenceArray<Entry> entries = table.entries;
+        final int mask = table.mask;
+
+        for (int index = (XAddressDictionary.Spread(hash) & mask); ; index = ((index+1) & mask)){
+
+            final Entry entry = entries.get(index);
+            if (null == entry)
+                return -1;
+            else if (hash == entry.hash && XAddressDictionary.Equals(entry.string,string,start,end))
+                return entry.id;
+        }
+    }
+    /**
+     * Register a string.
+     *
+     * @param string Component string
+     * @return Identifier, or negative one when the dictionary is
+     * full
+     */
+    public int id(String string){
+        return this.id(string,0,string.length());
+    }
+    /**
+     * Register a region of a character sequence.
+     *
+     * @param string Source sequence
+     * @param start Component start offset (inclusive)
+     * @param end Component end offset (exclusive)
+     * @return Identifier, or negative one when the dictionary is
+     * full
+     */
+    public int id(CharSequence string, int start, int end){
+        return this.id(string,start,end,XAddressDictionary.Hash(string,start,end));
+    }
+    /**
+     * Register a region of a character sequence, having its hash code
+     * from the caller's scan of the region.
+     *
+     * @param string Source sequence
+     * @param start Component start offset (inclusive)
+     * @param end Component end offset (exclusive)
+     * @param hash Result of {@link #Hash(java.lang.CharSequence,int,int)
+     * Hash} for the region
+     * @return Identifier, or negative one when the dictionary is
+     * full
+     */
+    public int id(CharSequence string, int start, int end, int hash){
+        final int id = this.lookup(string,start,end,hash);
+        if (-1 < id)
+            return id;
+        else if (this.maximum <= this.count)
+            return -1;
+        else
+            return this.add(string,start,end,hash);
+    }
+    private synchronized int add(CharSequence string, int start, int end, int hash){
+        Table table = this.table;
+        int index;
+        for (index = (XAddressDictionary.Spread(hash) & table.mask); ; index = ((index+1) & table.mask)){
+
+            final Entry entry = table.entries.get(index);
+            if (null == entry)
+                break;
+            else if (hash == entry.hash && XAddressDictionary.Equals(entry.string,string,start,end))
+                return entry.id;
+        }
+        final int id = this.count;
+        if (this.maximum <= id)
+            return -1;
+        else {
+            final String canonical;
+            if (0 == start && string.length() == end && string instanceof String)
+                canonical = (String)string;
+            else
+                canonical = string.subSequence(start,end).toString();
+
+            String[] list = this.list;
+            if (id == list.length){
+                final String[] copier = new String[id << 1];
+                System.arraycopy(list,0,copier,0,id);
+                list = copier;
+            }
+            list[id] = canonical;
+            this.list = list;
+            this.count = (id+1);
+
+            final Entry entry = new Entry(canonical,hash,id);
+            /*
+             * Load factor one half
+             */
+            if (((id+1) << 1) > (table.mask+1)){
+                table = this.grow(table);
+                for (index = (XAddressDictionary.Spread(hash) & table.mask);
+                     null != table.entries.get(index);
+                     index = ((index+1) & table.mask));
+            }
+            table.entries.set(index,entry);
+
+            return id;
+        }
+    }
+    private Table grow(Table table){
+        final Table copier = new Table((table.mask+1) << 1);
+        final AtomicReferenceArray<Entry> entries = table.entries;
+        for (int cc = 0, len = entries.length(); cc < len; cc++){
+            final Entry entry = entries.get(cc);
+            if (null != entry){
+                int index = (XAddressDictionary.Spread(entry.hash) & copier.mask);
+                while (null != copier.entries.get(index)){
+                    index = ((index+1) & copier.mask);
+                }
+                copier.entries.set(index,entry);
+            }
+        }
+        this.table = copier;
+        return copier;
+    }
+
+
+    /**
+     * @return Hash code of the region, equivalent to {@link
+     * java.lang.String#hashCode()} of its substring
+     */
+    public final static int Hash(CharSequence string, int start, int end){
+        int hash = 0;
+        for (int cc = start; cc < end; cc++){
+            hash = (31*hash)+string.charAt(cc);
+        }
+        return hash;
+    }
+    /**
+     * @return String equals region
+     */
+    public final static boolean Equals(String a, CharSequence b, int start, int end){
+        final int len = (end-start);
+        if (a.length() == len){
+            for (int cc = 0; cc < len; cc++){
+                if (a.charAt(cc) != b.charAt(start+cc))
+                    return false;
+            }
+            return true;
+        }
+        else
+            return false;
+    }
+    private final static int Spread(int hash){
+        hash ^= (hash >>> 16);
+        hash ^= (hash >>> 7);
+        return hash;
+    }
+}
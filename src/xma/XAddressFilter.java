@@ -0,0 +1,377 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * An approximate membership filter over a set of addresses, for a
+ * negative test in front of an exact lookup.  A filter has no false
+ * negatives, and false positives at a rate determined by its size.
+ *
+ * <h3>Mode</h3>
+ *
+ * <p> A {@link XAddressFilter.Mode#Bare Bare} filter tests the logon
+ * of an address, or the identifier of an address without host.  A
+ * {@link XAddressFilter.Mode#Full Full} filter tests the complete
+ * address.  Members are hashed by {@link XAddressHash}, so that an
+ * address string may be tested without parsing. </p>
+ *
+ * <h3>Bloom</h3>
+ *
+ * <p> The {@link XAddressFilter.Bloom} filter sets bits by double
+ * hashing, and does not support removal. </p>
+ *
+ * <h3>Cuckoo</h3>
+ *
+ * <p> The {@link XAddressFilter.Cuckoo} filter holds sixteen bit
+ * fingerprints in buckets of four, packed in one long per bucket.
+ * Each fingerprint has two candidate buckets, and may be removed. An
+ * add fails when the filter is too full. </p>
+ *
+ * <p> Filters are not synchronized. </p>
+ *
+ * @author jdp
+ */
+public abstract class XAddressFilter
+    extends java.lang.Object
+{
+    public enum Mode {
+        Bare,
+        Full;
+    }
+    /**
+     * Bit array filter
+     */
+    public static class Bloom
+        extends XAddressFilter
+    {
+        private final long[] bits;
+
+        private final int mask, hashes;
+
+
+        /**
+         * @param expected Expected number of members
+         * @param fpp False positive probability at the expected
+         * number of members
+         * @param mode Member form
+         */
+        public Bloom(int expected, double fpp, Mode mode){
+            super(mode);
+            if (1 > expected || 0.0 >= fpp || 1.0 <= fpp)
+                throw new IllegalArgumentException();
+            else {
+                final double ln2 = Math.log(2.0);
+                final double m = (-expected * Math.log(fpp) / (ln2 * ln2));
+                int length = 64;
+                while (length < m && length < (1 << 30)){
+                    length <<= 1;
+                }
+                this.bits = new long[length >>> 6];
+                this.mask = (length-1);
+                this.hashes = Math.max(1,(int)Math.round(length * ln2 / expected));
+            }
+        }
+
+
+        /**
+         * @return Number of bits
+         */
+        public int length(){
+            return (this.mask+1);
+        }
+        public int hashes(){
+            return this.hashes;
+        }
+        protected boolean add(long hash){
+            final long[] bits = this.bits;
+            final int h1 = (int)hash;
+            final int h2 = (int)(hash >>> 32);
+            boolean changed = false;
+            for (int cc = 0, h = h1; cc < this.hashes; cc++, h += h2){
+                final int index = (h & this.mask);
+                final long bit = (1L << index);
+                if (0L == (bits[index >>> 6] & bit)){
+                    bits[index >>> 6] |= bit;
+                    changed = true;
+                }
+            }
+            if (changed)
+                this.size += 1;
+            return changed;
+        }
+        protected boolean contains(long hash){
+            final long[] bits = this.bits;
+            final int h1 = (int)hash;
+            final int h2 = (int)(hash >>> 32);
+            for (int cc = 0, h = h1; cc < this.hashes; cc++, h += h2){
+                final int index = (h & this.mask);
+                if (0L == (bits[index >>> 6] & (1L << index)))
+                    return false;
+            }
+            return true;
+        }
+        public void clear(){
+            java.util.Arrays.fill(this.bits,0L);
+            this.size = 0;
+        }
+    }
+    /**
+     * Fingerprint filter with removal
+     */
+    public static class Cuckoo
+        extends XAddressFilter
+    {
+        private final static int KICKS = 500;
+
+
+        private final long[] buckets;
+
+        private final int mask;
+
+        private long random = 0x2545F4914F6CDD1DL;
+
+
+        /**
+         * @param capacity Maximum number of members, at a load of
+         * about nineteen in twenty
+         * @param mode Member form
+         */
+        public Cuckoo(int capacity, Mode mode){
+            super(mode);
+            if (1 > capacity)
+                throw new IllegalArgumentException();
+            else {
+                final long needed = (((long)capacity * 20L / 19L) + 3L) / 4L;
+                int length = 2;
+                while (length < needed && length < (1 << 30)){
+                    length <<= 1;
+                }
+                this.buckets = new long[length];
+                this.mask = (length-1);
+            }
+        }
+
+
+        /**
+         * @return Number of fingerprints held
+         */
+        public int capacity(){
+            return (this.buckets.length << 2);
+        }
+        /**
+         * @param address Member
+         * @return Member was present, and one copy was removed
+         */
+        public boolean remove(XAddress address){
+            return this.remove(this.hash(address));
+        }
+        /**
+         * @param address A part or whole XMPP address
+         * @return Member was present, and one copy was removed
+         */
+        public boolean remove(CharSequence address){
+            return this.remove(this.hash(address));
+        }
+        protected boolean add(long hash){
+            int fp = Fingerprint(hash);
+            int index = ((int)hash & this.mask);
+            if (this.insert(index,fp) || this.insert(this.alternate(index,fp),fp)){
+                this.size += 1;
+                return true;
+            }
+            else {
+                /*
+                 * Relocate resident fingerprints to their alternate
+                 * buckets, restoring the table when the kicks run out
+                 */
+                final int[] path = new int[KICKS];
+                final int[] slots = new int[KICKS];
+                if (0 != (this.next() & 1))
+                    index = this.alternate(index,fp);
+
+                for (int kick = 0; kick < KICKS; kick++){
+                    final int slot = (int)(this.next() & 3);
+                    path[kick] = index;
+                    slots[kick] = slot;
+                    final int evicted = this.swap(index,slot,fp);
+                    fp = evicted;
+                    index = this.alternate(index,fp);
+                    if (this.insert(index,fp)){
+                        this.size += 1;
+                        return true;
+                    }
+                }
+                for (int kick = (KICKS-1); -1 < kick; kick--){
+                    fp = this.swap(path[kick],slots[kick],fp);
+                }
+                return false;
+            }
+        }
+        protected boolean contains(long hash){
+            final int fp = Fingerprint(hash);
+            final int index = ((int)hash & this.mask);
+            return (Holds(this.buckets[index],fp) || Holds(this.buckets[this.alternate(index,fp)],fp));
+        }
+        protected boolean remove(long hash){
+            final int fp = Fingerprint(hash);
+            final int index = ((int)hash & this.mask);
+            if (this.delete(index,fp) || this.delete(this.alternate(index,fp),fp)){
+                this.size -= 1;
+                return true;
+            }
+            else
+                return false;
+        }
+        public void clear(){
+            java.util.Arrays.fill(this.buckets,0L);
+            this.size = 0;
+        }
+        private int alternate(int index, int fp){
+            return ((index ^ (int)XAddressHash.Mix64(fp)) & this.mask);
+        }
+        private boolean insert(int index, int fp){
+            final long bucket = this.buckets[index];
+            for (int slot = 0; slot < 4; slot++){
+                final int shift = (slot << 4);
+                if (0L == ((bucket >>> shift) & 0xFFFFL)){
+                    this.buckets[index] = (bucket | ((long)fp << shift));
+                    return true;
+                }
+            }
+            return false;
+        }
+        private boolean delete(int index, int fp){
+            final long bucket = this.buckets[index];
+            for (int slot = 0; slot < 4; slot++){
+                final int shift = (slot << 4);
+                if (fp == (int)((bucket >>> shift) & 0xFFFFL)){
+                    this.buckets[index] = (bucket & ~(0xFFFFL << shift));
+                    return true;
+                }
+            }
+            return false;
+        }
+        /**
+         * @return Fingerprint replaced by the argument fingerprint
+         */
+        private int swap(int index, int slot, int fp){
+            final long bucket = this.buckets[index];
+            final int shift = (slot << 4);
+            final int evicted = (int)((bucket >>> shift) & 0xFFFFL);
+            this.buckets[index] = ((bucket & ~(0xFFFFL << shift)) | ((long)fp << shift));
+            return evicted;
+        }
+        /**
+         * Xorshift generator for the choice of eviction
+         */
+        private long next(){
+            long x = this.random;
+            x ^= (x << 13);
+            x ^= (x >>> 7);
+            x ^= (x << 17);
+            this.random = x;
+            return x;
+        }
+
+
+        /**
+         * @return Non zero sixteen bit fingerprint from the high bits
+         */
+        private final static int Fingerprint(long hash){
+            final int fp = (int)(hash >>> 48);
+            return (0 == fp)?(1):(fp);
+        }
+        private final static boolean Holds(long bucket, int fp){
+            for (int shift = 0; shift < 64; shift += 16){
+                if (fp == (int)((bucket >>> shift) & 0xFFFFL))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+
+    public final Mode mode;
+
+    protected int size;
+
+
+    protected XAddressFilter(Mode mode){
+        super();
+        if (null == mode)
+            throw new IllegalArgumentException();
+        else
+            this.mode = mode;
+    }
+
+
+    /**
+     * @return Number of members added, less removed
+     */
+    public int size(){
+        return this.size;
+    }
+    /**
+     * @param address Member
+     * @return False for a bloom filter when the member may have been
+     * present, or for a cuckoo filter when the filter is too full
+     */
+    public boolean add(XAddress address){
+        return this.add(this.hash(address));
+    }
+    /**
+     * @param address A part or whole XMPP address
+     */
+    public boolean add(CharSequence address){
+        return this.add(this.hash(address));
+    }
+    /**
+     * @param address Address
+     * @return False when the address is certainly not a member
+     */
+    public boolean mightContain(XAddress address){
+        return (null != address && this.contains(this.hash(address)));
+    }
+    /**
+     * @param address A part or whole XMPP address, tested without
+     * parsing
+     * @return False when the address is certainly not a member
+     */
+    public boolean mightContain(CharSequence address){
+        return (null != address && this.contains(this.hash(address)));
+    }
+    public abstract void clear();
+
+    protected abstract boolean add(long hash);
+
+    protected abstract boolean contains(long hash);
+
+    protected final long hash(XAddress address){
+        if (Mode.Bare == this.mode)
+            return XAddressHash.Bare64(address);
+        else
+            return XAddressHash.Full64(address);
+    }
+    protected final long hash(CharSequence address){
+        if (Mode.Bare == this.mode)
+            return XAddressHash.Bare64(address);
+        else
+            return XAddressHash.Hash64(address,XAddressHash.SEED);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * Stable, seedable 64 and 128 bit hash functions over the string
+ * forms of an address, independent of the hash code of {@link
+ * java.lang.String}, for sharding and off heap tables.
+ *
+ * <h3>Function</h3>
+ *
+ * <p> Each character is combined into a lane by exclusive or,
+ * rotation and multiplication.  The length is combined at the end, and
+ * the lane is finished with the 64 bit finalizer of MurmurHash3.  A
+ * 128 bit hash has a second lane of different constants, and mixes
+ * the two lanes on finishing.  The first lane of a 128 bit hash is
+ * the state of the 64 bit hash. </p>
+ *
+ * <p> Because the length is combined last, the bare hash of an
+ * address is the state of its full hash at the '/' delimiter.  The
+ * {@link #Scan(java.lang.CharSequence,long,long[]) Scan} functions
+ * locate the delimiters of an address and compute both hashes in one
+ * pass. </p>
+ *
+ * <p> Values depend only on the sequence of characters and the seed.
+ * They are a published format, and must not change. </p>
+ *
+ * @author jdp
+ */
+public final class XAddressHash
+    extends java.lang.Object
+{
+    public final static long SEED = 0L;
+
+    private final static long C1 = 0x87C37B91114253D5L;
+
+    private final static long C2 = 0x4CF5AD432745937FL;
+
+
+    /**
+     * @param address Address
+     * @return Hash of the logon, or of the identifier of an address
+     * without host
+     */
+    public final static long Bare64(XAddress address){
+        return Hash64(XAddressKey.BareForm(address),SEED);
+    }
+    /**
+     * @param address Address
+     * @return Hash of the complete address
+     */
+    public final static long Full64(XAddress address){
+        return Hash64(address.toString(),SEED);
+    }
+    /**
+     * @param address A part or whole XMPP address
+     * @return Hash of the input preceding any '/', equal to {@link
+     * #Bare64(XAddress)} for a valid address
+     */
+    public final static long Bare64(CharSequence address){
+        final int len = address.length();
+        int end = 0;
+        while (end < len && '/' != address.charAt(end)){
+            end += 1;
+        }
+        return Hash64(address,0,end,SEED);
+    }
+    public final static long Hash64(CharSequence string, long seed){
+        return Hash64(string,0,string.length(),seed);
+    }
+    /**
+     * @param string Source sequence
+     * @param start Start offset (inclusive)
+     * @param end End offset (exclusive)
+     * @param seed Hash seed
+     * @return Hash of the region
+     */
+    public final static long Hash64(CharSequence string, int start, int end, long seed){
+        long h = seed;
+        for (int cc = start; cc < end; cc++){
+            h = Step1(h,string.charAt(cc));
+        }
+        return Finish64(h,(end-start));
+    }
+    /**
+     * @param string Source sequence
+     * @param seed Hash seed
+     * @param hash Array of two elements receiving the low and high
+     * words of the hash
+     */
+    public final static void Hash128(CharSequence string, long seed, long[] hash){
+        Hash128(string,0,string.length(),seed,hash,0);
+    }
+    /**
+     * @param string Source sequence
+     * @param start Start offset (inclusive)
+     * @param end End offset (exclusive)
+     * @param seed Hash seed
+     * @param hash Array receiving the low and high words of the hash
+     * @param index Index of the low word in the hash array
+     */
+    public final static void Hash128(CharSequence string, int start, int end, long seed, long[] hash, int index){
+        long h1 = seed, h2 = (seed ^ C1);
+        for (int cc = start; cc < end; cc++){
+            final char ch = string.charAt(cc);
+            h1 = Step1(h1,ch);
+            h2 = Step2(h2,ch);
+        }
+        Finish128(h1,h2,(end-start),hash,index);
+    }
+    /**
+     * Locate the delimiters of an XMPP address, and hash its bare and
+     * full forms, in one pass.
+     *
+     * @param string XMPP address
+     * @param seed Hash seed
+     * @param hash Array of two elements receiving the 64 bit hashes
+     * of the bare and full forms, when valid
+     * @return Offsets as for {@link
+     * XAddress#Offsets(java.lang.CharSequence)}
+     */
+    public final static long Scan(CharSequence string, long seed, long[] hash){
+        return Scan(string,seed,hash,false);
+    }
+    /**
+     * Locate the delimiters of an XMPP address, and hash its bare and
+     * full forms, in one pass.
+     *
+     * @param string XMPP address
+     * @param seed Hash seed
+     * @param hash Array of four elements receiving the low and high
+     * words of the 128 bit hash of the bare form, followed by those
+     * of the full form, when valid
+     * @return Offsets as for {@link
+     * XAddress#Offsets(java.lang.CharSequence)}
+     */
+    public final static long Scan128(CharSequence string, long seed, long[] hash){
+        return Scan(string,seed,hash,true);
+    }
+    private final static long Scan(CharSequence string, long seed, long[] hash, boolean wide){
+        if (null == string)
+            return XAddress.SCAN_EMPTY;
+        else {
+            final int carlen = string.length();
+            if (0 < carlen){
+                long h1 = seed, h2 = (seed ^ C1);
+                long b1 = 0L, b2 = 0L;
+                int indexOfSlash = -1, indexOfHost = -1;
+                boolean duplicate = false;
+
+                for (int cc = 0; cc < carlen; cc++){
+                    final char ch = string.charAt(cc);
+                    if (-1 == indexOfSlash){
+                        if ('/' == ch){
+                            indexOfSlash = cc;
+                            b1 = h1;
+                            b2 = h2;
+                        }
+                        else if ('@' == ch){
+                            if (-1 == indexOfHost)
+                                indexOfHost = cc;
+                            else {
+                                duplicate = true;
+                                break;
+                            }
+                        }
+                    }
+                    h1 = Step1(h1,ch);
+                    if (wide)
+                        h2 = Step2(h2,ch);
+                }
+                final long offsets = XAddress.Delimiters(indexOfHost,indexOfSlash,duplicate);
+                if (-1 < offsets){
+                    if (-1 == indexOfSlash){
+                        b1 = h1;
+                        b2 = h2;
+                    }
+                    final int bare = (-1 == indexOfSlash)?(carlen):(indexOfSlash);
+                    if (wide){
+                        Finish128(b1,b2,bare,hash,0);
+                        Finish128(h1,h2,carlen,hash,2);
+                    }
+                    else {
+                        hash[0] = Finish64(b1,bare);
+                        hash[1] = Finish64(h1,carlen);
+                    }
+                }
+                return offsets;
+            }
+            else
+                return XAddress.SCAN_EMPTY;
+        }
+    }
+    /**
+     * MurmurHash3 64 bit finalizer
+     */
+    public final static long Mix64(long h){
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+    final static long Step1(long h, char ch){
+        return (Long.rotateLeft(h ^ ch,31) * C2);
+    }
+    private final static long Step2(long h, char ch){
+        return (Long.rotateLeft(h ^ ch,33) * C1);
+    }
+    final static long Finish64(long h, int length){
+        return Mix64(h ^ (length * C1));
+    }
+    private final static void Finish128(long h1, long h2, int length, long[] hash, int index){
+        h1 = Mix64(h1 ^ (length * C1));
+        h2 = Mix64(h2 ^ (length * C2));
+        h1 += h2;
+        h2 += h1;
+        hash[index] = h1;
+        hash[index+1] = h2;
+    }
+
+
+    private XAddressHash(){
+        super();
+    }
+}
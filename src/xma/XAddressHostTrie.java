@@ -0,0 +1,322 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A trie of host names in reversed label order resolves the {@link
+ * XAddress#host} of an address to the route of the most specific
+ * matching rule.
+ *
+ * <h3>Rules</h3>
+ * <pre>
+ * muc.example.com     the host muc.example.com
+ * *.example.com       any host below example.com
+ * *                   any host
+ * </pre>
+ *
+ * <p> An exact rule is more specific than a wildcard rule, and a
+ * deeper wildcard is more specific than a shallower one.  Labels are
+ * compared without case in US-ASCII. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> Rules are compiled by a {@link XAddressHostTrie.Builder} into
+ * an immutable {@link XAddressHostTrie.Snapshot} of flat arrays,
+ * which is published to the trie.  Readers resolve against the
+ * current snapshot without locking, while a replacement is built.
+ * Resolution is in the number of labels of the host, and does not
+ * create label substrings. </p>
+ *
+ * @author jdp
+ */
+public class XAddressHostTrie<V>
+    extends java.lang.Object
+{
+    /**
+     * Mutable rule set
+     */
+    public static class Builder<V>
+        extends java.lang.Object
+    {
+        private final static class Node<V> {
+
+            final TreeMap<String,Node<V>> children = new TreeMap<String,Node<V>>();
+
+            V exact, wildcard;
+        }
+
+
+        private final Node<V> root = new Node<V>();
+
+
+        public Builder(){
+            super();
+        }
+
+
+        /**
+         * @param rule Host name, or host name preceded by "*.", or
+         * "*"
+         * @param route Route for hosts matching the rule
+         * @return This builder
+         */
+        public Builder<V> put(String rule, V route){
+            if (null == rule || null == route || 0 == rule.length())
+                throw new IllegalArgumentException(rule);
+            else if ("*".equals(rule)){
+                this.root.wildcard = route;
+                return this;
+            }
+            else {
+                final boolean wildcard = rule.startsWith("*.");
+                final String name = XAddressHostTrie.Lower((wildcard)?(rule.substring(2)):(rule));
+                Node<V> node = this.root;
+                int end = name.length();
+                while (0 < end){
+                    final int start = (name.lastIndexOf('.',end-1)+1);
+                    if (start == end)
+                        throw new IllegalArgumentException(rule);
+                    else {
+                        final String label = name.substring(start,end);
+                        Node<V> child = node.children.get(label);
+                        if (null == child){
+                            child = new Node<V>();
+                            node.children.put(label,child);
+                        }
+                        node = child;
+                        end = (start-1);
+                    }
+                }
+                if (0 == end)
+                    throw new IllegalArgumentException(rule);
+                else if (wildcard)
+                    node.wildcard = route;
+                else
+                    node.exact = route;
+
+                return this;
+            }
+        }
+        /**
+         * @return Immutable trie of the current rules
+         */
+        public Snapshot<V> build(){
+            /*
+             * Breadth first numbering places the children of a node
+             * in contiguous, sorted order
+             */
+            final ArrayList<Node<V>> nodes = new ArrayList<Node<V>>();
+            final ArrayList<String> labels = new ArrayList<String>();
+            nodes.add(this.root);
+            labels.add("");
+            final int[] first, count;
+            {
+                final ArrayList<int[]> children = new ArrayList<int[]>();
+                for (int cc = 0; cc < nodes.size(); cc++){
+                    final Node<V> node = nodes.get(cc);
+                    children.add(new int[]{nodes.size(),node.children.size()});
+                    for (Map.Entry<String,Node<V>> entry : node.children.entrySet()){
+                        labels.add(entry.getKey());
+                        nodes.add(entry.getValue());
+                    }
+                }
+                final int size = nodes.size();
+                first = new int[size];
+                count = new int[size];
+                for (int cc = 0; cc < size; cc++){
+                    first[cc] = children.get(cc)[0];
+                    count[cc] = children.get(cc)[1];
+                }
+            }
+            final int size = nodes.size();
+            final Object[] exact = new Object[size];
+            final Object[] wildcard = new Object[size];
+            for (int cc = 0; cc < size; cc++){
+                exact[cc] = nodes.get(cc).exact;
+                wildcard[cc] = nodes.get(cc).wildcard;
+            }
+            return new Snapshot<V>(labels.toArray(new String[size]),first,count,exact,wildcard);
+        }
+    }
+    /**
+     * Immutable trie in flat arrays, indexed by node number from the
+     * root at zero
+     */
+    public final static class Snapshot<V>
+        extends java.lang.Object
+    {
+        private final String[] labels;
+
+        private final int[] first, count;
+
+        private final Object[] exact, wildcard;
+
+
+        Snapshot(String[] labels, int[] first, int[] count, Object[] exact, Object[] wildcard){
+            super();
+            this.labels = labels;
+            this.first = first;
+            this.count = count;
+            this.exact = exact;
+            this.wildcard = wildcard;
+        }
+
+
+        /**
+         * @return Number of nodes
+         */
+        public int size(){
+            return this.labels.length;
+        }
+        /**
+         * @return Route of the host of the address, or null
+         */
+        public V resolve(XAddress address){
+            if (null == address || null == address.host)
+                return null;
+            else
+                return this.resolve(address.host,0,address.host.length());
+        }
+        /**
+         * @return Route of the host, or null
+         */
+        public V resolve(CharSequence host){
+            return this.resolve(host,0,host.length());
+        }
+        /**
+         * @param host Source sequence
+         * @param start Host start offset (inclusive)
+         * @param end Host end offset (exclusive)
+         * @return Route of the host, or null
+         */
+        @SuppressWarnings("unchecked")
+        public V resolve(CharSequence host, int start, int end){
+            Object best = this.wildcard[0];
+            int node = 0;
+            while (start < end){
+                int label = (end-1);
+                while (start <= label && '.' != host.charAt(label)){
+                    label -= 1;
+                }
+                label += 1;
+
+                node = this.child(node,host,label,end);
+                if (-1 == node)
+                    break;
+                else if (label == start){
+                    if (null != this.exact[node])
+                        return (V)this.exact[node];
+                    else
+                        break;
+                }
+                else {
+                    if (null != this.wildcard[node])
+                        best = this.wildcard[node];
+
+                    end = (label-1);
+                }
+            }
+            return (V)best;
+        }
+        /**
+         * Binary search of the sorted children of a node
+         */
+        private int child(int node, CharSequence host, int start, int end){
+            int lo = this.first[node];
+            int hi = (lo + this.count[node] - 1);
+            while (lo <= hi){
+                final int mid = ((lo + hi) >>> 1);
+                final int cmp = XAddressHostTrie.Compare(this.labels[mid],host,start,end);
+                if (0 > cmp)
+                    lo = (mid+1);
+                else if (0 < cmp)
+                    hi = (mid-1);
+                else
+                    return mid;
+            }
+            return -1;
+        }
+    }
+
+
+    private volatile Snapshot<V> snapshot;
+
+
+    public XAddressHostTrie(){
+        this(new Builder<V>().build());
+    }
+    public XAddressHostTrie(Snapshot<V> snapshot){
+        super();
+        this.publish(snapshot);
+    }
+
+
+    public Snapshot<V> snapshot(){
+        return this.snapshot;
+    }
+    /**
+     * @param snapshot Replacement for readers
+     */
+    public void publish(Snapshot<V> snapshot){
+        if (null == snapshot)
+            throw new IllegalArgumentException();
+        else
+            this.snapshot = snapshot;
+    }
+    public V resolve(XAddress address){
+        return this.snapshot.resolve(address);
+    }
+    public V resolve(CharSequence host){
+        return this.snapshot.resolve(host);
+    }
+
+
+    /**
+     * Compare a lower case label to a region of a host without case
+     * in US-ASCII, in the order of {@link
+     * java.lang.String#compareTo(java.lang.String)} over lower case.
+     */
+    private final static int Compare(String label, CharSequence host, int start, int end){
+        final int alen = label.length();
+        final int blen = (end-start);
+        final int len = Math.min(alen,blen);
+        for (int cc = 0; cc < len; cc++){
+            final char ac = label.charAt(cc);
+            char bc = host.charAt(start+cc);
+            if ('A' <= bc && 'Z' >= bc)
+                bc += ('a' - 'A');
+            if (ac != bc)
+                return (ac - bc);
+        }
+        return (alen - blen);
+    }
+    final static String Lower(String string){
+        final char[] cary = string.toCharArray();
+        for (int cc = 0; cc < cary.length; cc++){
+            final char ch = cary[cc];
+            if ('A' <= ch && 'Z' >= ch)
+                cary[cc] = (char)(ch + ('a' - 'A'));
+        }
+        return new String(cary);
+    }
+}
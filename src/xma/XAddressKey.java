@@ -0,0 +1,291 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * An address key for hash collections has equals and hash code
+ * methods in agreement, with the hash code computed once in the
+ * constructor.
+ *
+ * <p> The equals method of {@link XAddress} is a roster test that is
+ * not transitive, and its hash code employs the resource.  An
+ * <code>XAddress</code> is not a key for hash collections.  These
+ * keys are views of an address for that purpose. </p>
+ *
+ * <h3>Bare</h3>
+ *
+ * <p> The {@link XAddressKey.Bare} key identifies the logon, or the
+ * identifier of an address without a host.  Its hash code is the
+ * string hash code of the bare form, as computed by {@link
+ * #Hash(java.lang.CharSequence)}. </p>
+ *
+ * <h3>Full</h3>
+ *
+ * <p> The {@link XAddressKey.Full} key identifies the complete
+ * string form of an address, including its resource. </p>
+ *
+ * <h3>Session</h3>
+ *
+ * <p> The {@link XAddressKey.Session} key identifies the logon,
+ * resource kind and resource session of an address, as by {@link
+ * XAddress#equalsSession(XAddress)}.  Its hash code combines the
+ * {@link XAddress#bareHash64() bare hash}, the hash code of the
+ * shared kind string and a numeric session, without reading the
+ * characters of the address, for tables of sessions with {@link
+ * XAddress#SESSIONS}. </p>
+ *
+ * @see XAddress
+ * @author jdp
+ */
+public abstract class XAddressKey
+    extends java.lang.Object
+    implements java.io.Serializable
+{
+    public final static long serialVersionUID = 1L;
+
+
+    /**
+     * Key having the identity of the logon, or of the identifier of
+     * an address without host
+     */
+    public final static class Bare
+        extends XAddressKey
+        implements java.lang.Comparable<Bare>
+    {
+        public final static long serialVersionUID = 1L;
+
+
+        public Bare(XAddress address){
+            super(address,XAddressKey.BareForm(address).hashCode());
+        }
+        public Bare(String address){
+            this(new XAddress(address));
+        }
+
+
+        /**
+         * @return Logon or identifier
+         */
+        public String toString(){
+            return XAddressKey.BareForm(this.address);
+        }
+        public boolean equals(Object that){
+            if (this == that)
+                return true;
+            else if (that instanceof Bare){
+                final XAddress a = this.address;
+                final XAddress b = ((Bare)that).address;
+                if (a == b)
+                    return true;
+                else if (this.hash != ((Bare)that).hash)
+                    return false;
+                else
+                    return XAddressKey.BareEquals(a,b);
+            }
+            else
+                return false;
+        }
+        public int compareTo(Bare that){
+            return XAddressKey.BareForm(this.address).compareTo(XAddressKey.BareForm(that.address));
+        }
+    }
+    /**
+     * Key having the identity of the complete address
+     */
+    public final static class Full
+        extends XAddressKey
+        implements java.lang.Comparable<Full>
+    {
+        public final static long serialVersionUID = 1L;
+
+
+        public Full(XAddress address){
+            super(address,address.toString().hashCode());
+        }
+        public Full(String address){
+            this(new XAddress(address));
+        }
+
+
+        public String toString(){
+            return this.address.toString();
+        }
+        public boolean equals(Object that){
+            if (this == that)
+                return true;
+            else if (that instanceof Full){
+                final XAddress a = this.address;
+                final XAddress b = ((Full)that).address;
+                if (a == b)
+                    return true;
+                else if (this.hash != ((Full)that).hash)
+                    return false;
+                else
+                    return a.toString().equals(b.toString());
+            }
+            else
+                return false;
+        }
+        public int compareTo(Full that){
+            return this.address.toString().compareTo(that.address.toString());
+        }
+    }
+
+
+    /**
+     * Key having the identity of the session of a full address, or of
+     * the bare form of an address without resource
+     */
+    public final static class Session
+        extends XAddressKey
+    {
+        public final static long serialVersionUID = 1L;
+
+
+        public Session(XAddress address){
+            super(address,XAddressKey.SessionHash(address));
+        }
+        public Session(String address){
+            this(new XAddress(address));
+        }
+
+
+        /**
+         * The hash code depends on {@link XAddress#SESSIONS}
+         */
+        private Object readResolve()
+            throws java.io.ObjectStreamException
+        {
+            return new Session(this.address);
+        }
+        public String toString(){
+            return this.address.toString();
+        }
+        public boolean equals(Object that){
+            if (this == that)
+                return true;
+            else if (that instanceof Session){
+                final XAddress a = this.address;
+                final XAddress b = ((Session)that).address;
+                if (a == b)
+                    return true;
+                else if (this.hash != ((Session)that).hash)
+                    return false;
+                else
+                    return a.equalsSession(b);
+            }
+            else
+                return false;
+        }
+    }
+
+
+    public final XAddress address;
+
+    protected final int hash;
+
+
+    protected XAddressKey(XAddress address, int hash){
+        super();
+        if (null == address)
+            throw new IllegalArgumentException();
+        else {
+            this.address = address;
+            this.hash = hash;
+        }
+    }
+
+
+    public final int hashCode(){
+        return this.hash;
+    }
+
+
+    /**
+     * @param address Address
+     * @return Logon, or identifier for an address without host
+     */
+    public final static String BareForm(XAddress address){
+        if (null != address.logon)
+            return address.logon;
+        else
+            return address.identifier;
+    }
+    /**
+     * @param a Address
+     * @param b Address
+     * @return Logon or identifier forms are equal
+     */
+    public final static boolean BareEquals(XAddress a, XAddress b){
+        if (a == b)
+            return true;
+        else if (null == a.host || null == b.host)
+            return (null == a.host && null == b.host && a.identifier.equals(b.identifier));
+        else {
+            final int ah = a.hostId();
+            final int bh = b.hostId();
+            if (-1 < ah && -1 < bh)
+                return (ah == bh && a.identifier.equals(b.identifier));
+            else
+                return a.logon.equals(b.logon);
+        }
+    }
+    /**
+     * @param address Address
+     * @return Hash code of a {@link XAddressKey.Session} key for the
+     * address
+     */
+    public final static int SessionHash(XAddress address){
+        long hash = address.bareHash64();
+        if (null != address.resource){
+            /*
+             * The kind is the canonical string of its dictionary,
+             * having its hash code once
+             */
+            final long kind = address.resourceKind.hashCode();
+            hash = XAddressHash.Mix64(hash ^ ((kind<<32)|address.resource.length()));
+
+            if (0 < address.sessionDigits())
+                hash = XAddressHash.Mix64(hash ^ address.sessionValue());
+            else
+                hash = XAddressHash.Mix64(hash ^ address.resourceSession.hashCode());
+        }
+        return (int)(hash ^ (hash>>>32));
+    }
+    /**
+     * Bare hash code of an address string, without parsing or
+     * allocating.
+     *
+     * @param address A part or whole XMPP address
+     * @return Hash code of a {@link XAddressKey.Bare} key for the
+     * address, being the string hash code of the input preceding any
+     * '/'
+     */
+    public final static int Hash(CharSequence address){
+        int hash = 0;
+        for (int cc = 0, len = address.length(); cc < len; cc++){
+            final char ch = address.charAt(cc);
+            if ('/' == ch)
+                break;
+            else
+                hash = (31*hash)+ch;
+        }
+        return hash;
+    }
+}
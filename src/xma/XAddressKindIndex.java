@@ -0,0 +1,376 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of live full addresses by {@link XAddress#resourceKind},
+ * for delivery to the sessions of one client kind of a user or of a
+ * host.
+ *
+ * <h3>Kinds</h3>
+ *
+ * <p> Resource kinds are identified by small integers from the
+ * dictionary of the index, having the kinds of {@link XAddressKinds}
+ * and those of {@link #register(java.lang.String) register}.
+ * Registering a kind in the index has no effect on the split of
+ * resources by {@link XAddressKinds}.  An address having a kind not
+ * registered when it is added is not indexed by kind. </p>
+ *
+ * <h3>Postings</h3>
+ *
+ * <p> The addresses of a kind on a host are held in a dense array,
+ * with removal by exchange with the last element.  The addresses of
+ * a user are held in an immutable array with a parallel array of
+ * kind identifiers, replaced by compare and set.  The add and remove
+ * of one session are ordered by the session, as bind and unbind. </p>
+ *
+ * @author jdp
+ */
+public class XAddressKindIndex
+    extends java.lang.Object
+{
+    /**
+     * Sessions of a bare address
+     */
+    private final static class User {
+
+        final XAddress[] addresses;
+
+        final int[] kinds;
+
+
+        User(XAddress[] addresses, int[] kinds){
+            super();
+            this.addresses = addresses;
+            this.kinds = kinds;
+        }
+
+
+        int indexOf(XAddress full){
+            final XAddress[] addresses = this.addresses;
+            for (int cc = 0, len = addresses.length; cc < len; cc++){
+                if (addresses[cc].equalsSession(full))
+                    return cc;
+            }
+            return -1;
+        }
+        User add(XAddress full, int kind){
+            final int count = this.addresses.length;
+            final XAddress[] addresses = new XAddress[count+1];
+            final int[] kinds = new int[count+1];
+            System.arraycopy(this.addresses,0,addresses,0,count);
+            System.arraycopy(this.kinds,0,kinds,0,count);
+            addresses[count] = full;
+            kinds[count] = kind;
+            return new User(addresses,kinds);
+        }
+        User remove(int index){
+            final int count = (this.addresses.length-1);
+            final XAddress[] addresses = new XAddress[count];
+            final int[] kinds = new int[count];
+            System.arraycopy(this.addresses,0,addresses,0,index);
+            System.arraycopy(this.kinds,0,kinds,0,index);
+            System.arraycopy(this.addresses,index+1,addresses,index,count-index);
+            System.arraycopy(this.kinds,index+1,kinds,index,count-index);
+            return new User(addresses,kinds);
+        }
+    }
+    /**
+     * Dense list of the sessions of a kind on a host
+     */
+    private final static class Posting {
+
+        private XAddress[] list = new XAddress[4];
+
+        private int size;
+
+        private final HashMap<String,Integer> index = new HashMap<String,Integer>();
+
+
+        synchronized void add(XAddress full){
+            if (!this.index.containsKey(full.full)){
+                if (this.size == this.list.length){
+                    final XAddress[] copier = new XAddress[this.size << 1];
+                    System.arraycopy(this.list,0,copier,0,this.size);
+                    this.list = copier;
+                }
+                this.index.put(full.full,this.size);
+                this.list[this.size++] = full;
+            }
+        }
+        synchronized void remove(XAddress full){
+            final Integer position = this.index.remove(full.full);
+            if (null != position){
+                final int index = position.intValue();
+                final int last = (this.size-1);
+                if (index != last){
+                    final XAddress moved = this.list[last];
+                    this.list[index] = moved;
+                    this.index.put(moved.full,position);
+                }
+                this.list[last] = null;
+                this.size = last;
+            }
+        }
+        synchronized int size(){
+            return this.size;
+        }
+        synchronized XAddress[] toArray(){
+            final XAddress[] list = new XAddress[this.size];
+            System.arraycopy(this.list,0,list,0,this.size);
+            return list;
+        }
+    }
+
+
+    /**
+     * Maximum number of kinds in an index
+     */
+    public final static int KINDS = 0x1000;
+
+    /**
+     * Kinds of the index
+     */
+    public final XAddressDictionary kinds;
+
+    private final ConcurrentHashMap<String,User> users = new ConcurrentHashMap<String,User>(16,0.75f,XAddressPool.CONCURRENCY);
+    /**
+     * Host postings by kind identifier
+     */
+    private volatile ConcurrentHashMap<String,Posting>[] hosts;
+
+
+    @SuppressWarnings({"unchecked","rawtypes"})
+    public XAddressKindIndex(){
+        super();
+        this.kinds = new XAddressDictionary(KINDS);
+        for (String kind : XAddressKinds.List()){
+            this.kinds.id(kind);
+        }
+        this.hosts = (ConcurrentHashMap<String,Posting>[])new ConcurrentHashMap[16];
+    }
+
+
+    /**
+     * Add a kind to the index, for addresses added following.
+     *
+     * @param kind Client kind, not empty
+     * @return Kind identifier
+     * @exception java.lang.IllegalArgumentException For an empty kind
+     * @exception java.lang.IllegalStateException For a full index
+     */
+    public int register(String kind){
+        if (null == kind || 0 == kind.length())
+            throw new IllegalArgumentException(kind);
+        else {
+            final int id = this.kinds.id(kind);
+            if (-1 == id)
+                throw new IllegalStateException(kind);
+            else
+                return id;
+        }
+    }
+
+
+    /**
+     * @param full Full address of a live session
+     * @return Kind identifier, or negative one for a kind not
+     * indexed
+     */
+    public int add(XAddress full){
+        if (null == full || null == full.resource)
+            throw new IllegalArgumentException(String.valueOf(full));
+        else {
+            final int kind = this.kind(full);
+            final String bare = full.logon;
+            while (true){
+                final User user = this.users.get(bare);
+                if (null == user){
+                    if (null == this.users.putIfAbsent(bare,new User(new XAddress[]{full},new int[]{kind})))
+                        break;
+                }
+                else if (-1 < user.indexOf(full))
+                    return kind;
+                else if (this.users.replace(bare,user,user.add(full,kind)))
+                    break;
+            }
+            if (-1 < kind){
+                final ConcurrentHashMap<String,Posting> hosts = this.hosts(kind);
+                Posting posting = hosts.get(full.host);
+                if (null == posting){
+                    final Posting created = new Posting();
+                    posting = hosts.putIfAbsent(full.host,created);
+                    if (null == posting)
+                        posting = created;
+                }
+                posting.add(full);
+            }
+            return kind;
+        }
+    }
+    /**
+     * @param full Full address of a session
+     * @return Session was present
+     */
+    public boolean remove(XAddress full){
+        if (null == full || null == full.resource)
+            return false;
+        else {
+            final String bare = full.logon;
+            int kind;
+            while (true){
+                final User user = this.users.get(bare);
+                if (null == user)
+                    return false;
+                else {
+                    final int index = user.indexOf(full);
+                    if (-1 == index)
+                        return false;
+                    else {
+                        kind = user.kinds[index];
+                        if (1 == user.addresses.length){
+                            if (this.users.remove(bare,user))
+                                break;
+                        }
+                        else if (this.users.replace(bare,user,user.remove(index)))
+                            break;
+                    }
+                }
+            }
+            if (-1 < kind){
+                final ConcurrentHashMap<String,Posting>[] hosts = this.hosts;
+                if (kind < hosts.length && null != hosts[kind]){
+                    final Posting posting = hosts[kind].get(full.host);
+                    if (null != posting)
+                        posting.remove(full);
+                }
+            }
+            return true;
+        }
+    }
+    /**
+     * @param address Bare or full address of a user
+     * @param kind Resource kind
+     * @return Sessions of the kind of the user
+     */
+    public XAddress[] user(XAddress address, String kind){
+        return this.user(address,this.kinds.lookup(kind));
+    }
+    /**
+     * @param address Bare or full address of a user
+     * @param kind Resource kind identifier
+     * @return Sessions of the kind of the user
+     */
+    public XAddress[] user(XAddress address, int kind){
+        final User user = this.users.get(XAddressKey.BareForm(address));
+        if (null == user || -1 == kind)
+            return new XAddress[0];
+        else {
+            final int[] kinds = user.kinds;
+            int count = 0;
+            for (int k : kinds){
+                if (kind == k)
+                    count += 1;
+            }
+            final XAddress[] list = new XAddress[count];
+            for (int cc = 0, ix = 0; ix < count; cc++){
+                if (kind == kinds[cc])
+                    list[ix++] = user.addresses[cc];
+            }
+            return list;
+        }
+    }
+    /**
+     * @param host Host component
+     * @param kind Resource kind
+     * @return Sessions of the kind on the host
+     */
+    public XAddress[] host(String host, String kind){
+        return this.host(host,this.kinds.lookup(kind));
+    }
+    /**
+     * @param host Host component
+     * @param kind Resource kind identifier
+     * @return Sessions of the kind on the host
+     */
+    public XAddress[] host(String host, int kind){
+        final Posting posting = this.posting(host,kind);
+        if (null != posting)
+            return posting.toArray();
+        else
+            return new XAddress[0];
+    }
+    /**
+     * @param host Host component
+     * @param kind Resource kind identifier
+     * @return Number of sessions of the kind on the host
+     */
+    public int count(String host, int kind){
+        final Posting posting = this.posting(host,kind);
+        if (null != posting)
+            return posting.size();
+        else
+            return 0;
+    }
+    private Posting posting(String host, int kind){
+        final ConcurrentHashMap<String,Posting>[] hosts = this.hosts;
+        if (-1 < kind && kind < hosts.length && null != hosts[kind])
+            return hosts[kind].get(host);
+        else
+            return null;
+    }
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private ConcurrentHashMap<String,Posting> hosts(int kind){
+        ConcurrentHashMap<String,Posting>[] hosts = this.hosts;
+        if (kind < hosts.length && null != hosts[kind])
+            return hosts[kind];
+        else {
+            synchronized(this){
+                hosts = this.hosts;
+                if (kind >= hosts.length){
+                    int length = hosts.length;
+                    while (length <= kind){
+                        length <<= 1;
+                    }
+                    final ConcurrentHashMap<String,Posting>[] copier = (ConcurrentHashMap<String,Posting>[])new ConcurrentHashMap[length];
+                    System.arraycopy(hosts,0,copier,0,hosts.length);
+                    hosts = copier;
+                }
+                if (null == hosts[kind])
+                    hosts[kind] = new ConcurrentHashMap<String,Posting>();
+
+                this.hosts = hosts;
+                return hosts[kind];
+            }
+        }
+    }
+
+
+    /**
+     * @param full Full address
+     * @return Resource kind identifier, or negative one for a kind not
+     * registered
+     */
+    public int kind(XAddress full){
+        return this.kinds.lookup(full.resourceKind);
+    }
+}
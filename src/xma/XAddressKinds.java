@@ -0,0 +1,269 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.Arrays;
+
+/**
+ * Registry of client kinds known to prefix a hex session in a
+ * resource, as "android" in "android1a2b3c4d".  A kind ending in a
+ * hex character is not separated from its session by the trailing
+ * hex rule of {@link XAddress#Resource(java.lang.String)}, and is
+ * recognized here instead.
+ *
+ * <h3>Registration</h3>
+ *
+ * <p> The registry has the kinds "android", "iPhone", "iPad",
+ * "Kopete", "Miranda", "Instantbird" and "Coccinella", and the comma
+ * separated kinds of system property <code>xma.XAddressKinds</code>.
+ * Further kinds are added by {@link #Register(java.lang.String)
+ * Register} at startup.  Addresses constructed before a registration
+ * retain their split. </p>
+ *
+ * <p> Each kind is assigned its identifier in {@link
+ * XAddressDictionary#Kinds}.  The dictionary holds only registered
+ * kinds, as parsing looks a kind up without adding it. </p>
+ *
+ * <h3>Matching</h3>
+ *
+ * <p> The kinds are compiled into a character trie in flat arrays,
+ * which is replaced on registration.  A match walks the resource from
+ * its start without allocating, and is case sensitive. </p>
+ *
+ * @author jdp
+ */
+public final class XAddressKinds
+    extends java.lang.Object
+{
+    public final static String PROPERTY = "xma.XAddressKinds";
+
+    private final static String[] DEFAULTS = {
+        "android", "iPhone", "iPad", "Kopete", "Miranda", "Instantbird", "Coccinella"
+    };
+
+    /**
+     * Immutable trie, indexed by node number from the root at zero
+     */
+    private final static class Trie
+        extends java.lang.Object
+    {
+        /**
+         * Sorted kinds
+         */
+        final String[] list;
+        /**
+         * Kind identifiers in the order of the list
+         */
+        final int[] ids;
+
+        final char[] labels;
+
+        final int[] first, count;
+        /**
+         * Kind identifier of a node, or negative one
+         */
+        final int[] kind;
+
+
+        Trie(String[] list, int[] ids){
+            super();
+            this.list = list;
+            this.ids = ids;
+
+            int size = 1;
+            for (String string : list){
+                size += string.length();
+            }
+            final char[] labels = new char[size];
+            final int[] first = new int[size], count = new int[size], kind = new int[size];
+            final int[] depth = new int[size], lo = new int[size], hi = new int[size];
+            Arrays.fill(kind,-1);
+            hi[0] = list.length;
+            /*
+             * Breadth first numbering of the sorted list places the
+             * children of a node in contiguous, sorted order.  The
+             * kinds below a node have the prefix of the node, and the
+             * kind ending at the node is first among them.
+             */
+            int nodes = 1;
+            for (int node = 0; node < nodes; node++){
+                final int d = depth[node];
+                final int end = hi[node];
+                int cc = lo[node];
+                if (cc < end && d == list[cc].length()){
+                    kind[node] = ids[cc];
+                    cc += 1;
+                }
+                first[node] = nodes;
+                while (cc < end){
+                    final char ch = list[cc].charAt(d);
+                    int next = (cc+1);
+                    while (next < end && ch == list[next].charAt(d)){
+                        next += 1;
+                    }
+                    labels[nodes] = ch;
+                    depth[nodes] = (d+1);
+                    lo[nodes] = cc;
+                    hi[nodes] = next;
+                    nodes += 1;
+                    cc = next;
+                }
+                count[node] = (nodes-first[node]);
+            }
+            this.labels = labels;
+            this.first = first;
+            this.count = count;
+            this.kind = kind;
+        }
+
+
+        /**
+         * Binary search of the sorted children of a node
+         */
+        int child(int node, char ch){
+            int lo = this.first[node];
+            int hi = (lo + this.count[node] - 1);
+            while (lo <= hi){
+                final int mid = ((lo + hi) >>> 1);
+                final char label = this.labels[mid];
+                if (label < ch)
+                    lo = (mid+1);
+                else if (label > ch)
+                    hi = (mid-1);
+                else
+                    return mid;
+            }
+            return -1;
+        }
+    }
+
+
+    private static volatile Trie Current = new Trie(new String[0],new int[0]);
+
+    static {
+        for (String kind : DEFAULTS){
+            Register(kind);
+        }
+        final String property = System.getProperty(PROPERTY);
+        if (null != property){
+            for (String kind : property.split(",")){
+                kind = kind.trim();
+                if (0 < kind.length())
+                    Register(kind);
+            }
+        }
+    }
+
+
+    /**
+     * Add a kind to the registry.
+     *
+     * @param kind Client kind, not empty and not having '.'
+     * @return Identifier of the kind in {@link XAddressDictionary#Kinds}
+     * @exception java.lang.IllegalArgumentException For an empty or
+     * dotted kind
+     * @exception java.lang.IllegalStateException For a full
+     * dictionary
+     */
+    public final static synchronized int Register(String kind){
+        if (null == kind || 0 == kind.length() || -1 < kind.indexOf('.'))
+            throw new IllegalArgumentException(kind);
+        else {
+            final int id = XAddressDictionary.Kinds.id(kind);
+            if (-1 == id)
+                throw new IllegalStateException(kind);
+            else {
+                final Trie trie = Current;
+                final int index = Arrays.binarySearch(trie.list,kind);
+                if (0 > index){
+                    final int insert = -(index+1);
+                    final int size = trie.list.length;
+                    final String[] list = new String[size+1];
+                    final int[] ids = new int[size+1];
+                    System.arraycopy(trie.list,0,list,0,insert);
+                    System.arraycopy(trie.ids,0,ids,0,insert);
+                    list[insert] = kind;
+                    ids[insert] = id;
+                    System.arraycopy(trie.list,insert,list,insert+1,size-insert);
+                    System.arraycopy(trie.ids,insert,ids,insert+1,size-insert);
+
+                    Current = new Trie(list,ids);
+                }
+                return id;
+            }
+        }
+    }
+    /**
+     * Lookup a registered kind.  The registry is initialized before the
+     * lookup, so that its kinds are present in {@link
+     * XAddressDictionary#Kinds} independently of the addresses parsed
+     * before.
+     *
+     * @param string Source sequence
+     * @param start Kind start offset (inclusive)
+     * @param end Kind end offset (exclusive)
+     * @return Identifier of the kind in {@link XAddressDictionary#Kinds},
+     * or negative one for a kind not registered
+     */
+    public final static int Lookup(CharSequence string, int start, int end){
+        return XAddressDictionary.Kinds.lookup(string,start,end);
+    }
+    /**
+     * @return Registered kinds in sorted order
+     */
+    public final static String[] List(){
+        return Current.list.clone();
+    }
+    /**
+     * Find the longest registered kind prefixing a resource and
+     * ending at or beyond a minimum offset.
+     *
+     * @param string Source sequence
+     * @param start Resource start offset (inclusive)
+     * @param end Resource end offset (exclusive)
+     * @param min Least end offset of a matching kind, as following the
+     * last character of the resource that is not hex
+     * @return Identifier of the kind in {@link XAddressDictionary#Kinds}
+     * in the high word, and the end offset of the kind in the low
+     * word, or negative one for no match
+     */
+    public final static long Match(CharSequence string, int start, int end, int min){
+        final Trie trie = Current;
+        long match = -1L;
+        int node = 0;
+        for (int cc = start; cc < end; ){
+
+            node = trie.child(node,string.charAt(cc));
+            if (-1 == node)
+                break;
+            else {
+                cc += 1;
+                final int kind = trie.kind[node];
+                if (-1 < kind && min <= cc)
+                    match = ((((long)kind)<<32)|cc);
+            }
+        }
+        return match;
+    }
+
+
+    private XAddressKinds(){
+        super();
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * An open addressing map from bare address to value.  Keys have the
+ * identity of {@link XAddressKey.Bare}, being the logon, or the
+ * identifier of an address without host.  All resources of a logon
+ * map to one value.
+ *
+ * <h3>Table</h3>
+ *
+ * <p> Keys, values and key hash codes are held in parallel arrays
+ * probed linearly.  A probe compares cached hash codes before keys.
+ * Removal shifts following entries back into place, so the table has
+ * no deleted markers. </p>
+ *
+ * <h3>Lookup</h3>
+ *
+ * <p> Lookup by {@link #get(java.lang.CharSequence) address string}
+ * hashes and compares the input preceding any '/', without
+ * constructing an address. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> This map is not synchronized.  The {@link
+ * XAddressMap.Concurrent} map is divided into independently locked
+ * segments. </p>
+ *
+ * @see XAddressKey
+ * @author jdp
+ */
+public class XAddressMap<V>
+    extends java.lang.Object
+{
+    /**
+     * A map divided into independently locked segments selected by
+     * key hash code
+     */
+    public static class Concurrent<V>
+        extends java.lang.Object
+    {
+        private final XAddressMap<V>[] segments;
+
+        private final int shift;
+
+
+        public Concurrent(){
+            this(XAddressPool.CONCURRENCY);
+        }
+        /**
+         * @param concurrency Number of segments, rounded up to a
+         * power of two
+         */
+        @SuppressWarnings({"unchecked","rawtypes"})
+        public Concurrent(int concurrency){
+            super();
+            int count = 1, bits = 0;
+            while (count < concurrency){
+                count <<= 1;
+                bits += 1;
+            }
+            this.segments = (XAddressMap<V>[])new XAddressMap[count];
+            for (int cc = 0; cc < count; cc++){
+                this.segments[cc] = new XAddressMap<V>();
+            }
+            this.shift = (32 - bits);
+        }
+
+
+        public V get(XAddress key){
+            if (null == key)
+                return null;
+            else {
+                final XAddressMap<V> segment = this.segment(XAddressKey.BareForm(key).hashCode());
+                synchronized(segment){
+                    return segment.get(key);
+                }
+            }
+        }
+        public V get(CharSequence address){
+            if (null == address)
+                return null;
+            else {
+                final XAddressMap<V> segment = this.segment(XAddressKey.Hash(address));
+                synchronized(segment){
+                    return segment.get(address);
+                }
+            }
+        }
+        public V put(XAddress key, V value){
+            final XAddressMap<V> segment = this.segment(XAddressKey.BareForm(key).hashCode());
+            synchronized(segment){
+                return segment.put(key,value);
+            }
+        }
+        /**
+         * @return Value present, or the argument value when added
+         */
+        public V putIfAbsent(XAddress key, V value){
+            final XAddressMap<V> segment = this.segment(XAddressKey.BareForm(key).hashCode());
+            synchronized(segment){
+                final V present = segment.get(key);
+                if (null != present)
+                    return present;
+                else {
+                    segment.put(key,value);
+                    return value;
+                }
+            }
+        }
+        public V remove(XAddress key){
+            if (null == key)
+                return null;
+            else {
+                final XAddressMap<V> segment = this.segment(XAddressKey.BareForm(key).hashCode());
+                synchronized(segment){
+                    return segment.remove(key);
+                }
+            }
+        }
+        public int size(){
+            int size = 0;
+            for (XAddressMap<V> segment : this.segments){
+                synchronized(segment){
+                    size += segment.size;
+                }
+            }
+            return size;
+        }
+        public void clear(){
+            for (XAddressMap<V> segment : this.segments){
+                synchronized(segment){
+                    segment.clear();
+                }
+            }
+        }
+        private XAddressMap<V> segment(int hash){
+            if (32 == this.shift)
+                return this.segments[0];
+            else
+                return this.segments[XAddressMap.Spread(hash) >>> this.shift];
+        }
+    }
+
+
+    private XAddress[] keys;
+
+    private Object[] values;
+
+    private int[] hashes;
+
+    private int size, mask;
+
+
+    public XAddressMap(){
+        this(16);
+    }
+    /**
+     * @param capacity Expected number of keys
+     */
+    public XAddressMap(int capacity){
+        super();
+        int length = 16;
+        while (length < (capacity << 1)){
+            length <<= 1;
+        }
+        this.init(length);
+    }
+
+
+    public int size(){
+        return this.size;
+    }
+    public boolean isEmpty(){
+        return (0 == this.size);
+    }
+    public boolean containsKey(XAddress key){
+        return (-1 < this.indexOf(key));
+    }
+    public V get(XAddress key){
+        final int index = this.indexOf(key);
+        if (-1 < index)
+            return this.value(index);
+        else
+            return null;
+    }
+    /**
+     * @param address A part or whole XMPP address
+     * @return Value for the bare form of the address, or null
+     */
+    public V get(CharSequence address){
+        final int index = this.indexOf(address);
+        if (-1 < index)
+            return this.value(index);
+        else
+            return null;
+    }
+    /**
+     * @param address A part or whole XMPP address
+     * @return Key for the bare form of the address, or null
+     */
+    public XAddress key(CharSequence address){
+        final int index = this.indexOf(address);
+        if (-1 < index)
+            return this.keys[index];
+        else
+            return null;
+    }
+    /**
+     * @return Previous value, or null
+     */
+    public V put(XAddress key, V value){
+        if (null == key)
+            throw new IllegalArgumentException();
+        else {
+            final int hash = XAddressKey.BareForm(key).hashCode();
+            final XAddress[] keys = this.keys;
+            final int[] hashes = this.hashes;
+            final int mask = this.mask;
+
+            int index = (XAddressMap.Spread(hash) & mask);
+            for (XAddress k; null != (k = keys[index]); index = ((index+1) & mask)){
+
+                if (hash == hashes[index] && XAddressKey.BareEquals(k,key)){
+
+                    final V previous = this.value(index);
+                    this.values[index] = value;
+                    return previous;
+                }
+            }
+            keys[index] = key;
+            hashes[index] = hash;
+            this.values[index] = value;
+            /*
+             * Load factor one half
+             */
+            if ((++this.size << 1) > keys.length)
+                this.grow();
+
+            return null;
+        }
+    }
+    /**
+     * @return Removed value, or null
+     */
+    public V remove(XAddress key){
+        final int index = this.indexOf(key);
+        if (-1 < index){
+            final V previous = this.value(index);
+            this.delete(index);
+            return previous;
+        }
+        else
+            return null;
+    }
+    public void clear(){
+        java.util.Arrays.fill(this.keys,null);
+        java.util.Arrays.fill(this.values,null);
+        this.size = 0;
+    }
+    /**
+     * @return Copy of keys
+     */
+    public XAddress[] keys(){
+        final XAddress[] list = new XAddress[this.size];
+        final XAddress[] keys = this.keys;
+        for (int cc = 0, ix = 0, len = keys.length; cc < len; cc++){
+            if (null != keys[cc])
+                list[ix++] = keys[cc];
+        }
+        return list;
+    }
+    private int indexOf(XAddress key){
+        if (null == key)
+            return -1;
+        else {
+            final int hash = XAddressKey.BareForm(key).hashCode();
+            final XAddress[] keys = this.keys;
+            final int[] hashes = this.hashes;
+            final int mask = this.mask;
+
+            for (int index = (XAddressMap.Spread(hash) & mask); ; index = ((index+1) & mask)){
+
+                final XAddress k = keys[index];
+                if (null == k)
+                    return -1;
+                else if (hash == hashes[index] && XAddressKey.BareEquals(k,key))
+                    return index;
+            }
+        }
+    }
+    private int indexOf(CharSequence address){
+        if (null == address)
+            return -1;
+        else {
+            /*
+             * Hash and measure the bare form
+             */
+            int hash = 0, length = 0;
+            for (final int len = address.length(); length < len; length++){
+                final char ch = address.charAt(length);
+                if ('/' == ch)
+                    break;
+                else
+                    hash = (31*hash)+ch;
+            }
+            final XAddress[] keys = this.keys;
+            final int[] hashes = this.hashes;
+            final int mask = this.mask;
+
+            for (int index = (XAddressMap.Spread(hash) & mask); ; index = ((index+1) & mask)){
+
+                final XAddress k = keys[index];
+                if (null == k)
+                    return -1;
+                else if (hash == hashes[index] &&
+                         XAddressDictionary.Equals(XAddressKey.BareForm(k),address,0,length))
+                {
+                    return index;
+                }
+            }
+        }
+    }
+    /**
+     * Remove the entry at index, and shift following entries of the
+     * probe sequence back into place.
+     */
+    private void delete(int index){
+        final XAddress[] keys = this.keys;
+        final Object[] values = this.values;
+        final int[] hashes = this.hashes;
+        final int mask = this.mask;
+
+        int next = index;
+        while (true){
+            next = ((next+1) & mask);
+            final XAddress k = keys[next];
+            if (null == k)
+                break;
+            else {
+                final int home = (XAddressMap.Spread(hashes[next]) & mask);
+                /*
+                 * Move the entry at next into the hole at index when
+                 * its home does not lie cyclically in (index, next]
+                 */
+                if ((index <= next)?(home <= index || home > next):(home <= index && home > next)){
+
+                    keys[index] = k;
+                    values[index] = values[next];
+                    hashes[index] = hashes[next];
+                    index = next;
+                }
+            }
+        }
+        keys[index] = null;
+        values[index] = null;
+        this.size -= 1;
+    }
+    private void grow(){
+        final XAddress[] keys = this.keys;
+        final Object[] values = this.values;
+        final int[] hashes = this.hashes;
+
+        this.init(keys.length << 1);
+
+        final XAddress[] copierKeys = this.keys;
+        final Object[] copierValues = this.values;
+        final int[] copierHashes = this.hashes;
+        final int mask = this.mask;
+
+        for (int cc = 0, len = keys.length; cc < len; cc++){
+            final XAddress k = keys[cc];
+            if (null != k){
+                int index = (XAddressMap.Spread(hashes[cc]) & mask);
+                while (null != copierKeys[index]){
+                    index = ((index+1) & mask);
+                }
+                copierKeys[index] = k;
+                copierValues[index] = values[cc];
+                copierHashes[index] = hashes[cc];
+            }
+        }
+    }
+    private void init(int length){
+        this.keys = new XAddress[length];
+        this.values = new Object[length];
+        this.hashes = new int[length];
+        this.mask = (length-1);
+    }
+    @SuppressWarnings("unchecked")
+    private V value(int index){
+        return (V)this.values[index];
+    }
+
+
+    private final static int Spread(int hash){
+        hash *= 0x9E3779B9;
+        return (hash ^ (hash >>> 16));
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compiled set of address patterns, as for privacy lists and
+ * blocklists, matches an address against all rules with one host
+ * resolution and at most three hash lookups.
+ *
+ * <h3>Patterns</h3>
+ * <pre>
+ * node@domain/resource    the full address
+ * node@domain             any resource of the bare address
+ * node@domain/*           any resource of the bare address
+ * domain/resource         the resource of the domain address
+ * domain                  any address on the domain
+ * *@domain                any address on the domain
+ * *@domain/resource       the resource of any address on the domain
+ * </pre>
+ *
+ * <p> The domain of a pattern may be "*.suffix" for any domain below
+ * the suffix, or "*" for any domain.  Domains are compared without
+ * case in US-ASCII, and nodes and resources with case. </p>
+ *
+ * <p> The domain of an address is its host, or its identifier when
+ * it has no host, following XEP-0016. </p>
+ *
+ * <h3>Order</h3>
+ *
+ * <p> Each rule has an order, and the matching rule of least order
+ * determines the result.  Rules of equal order are ranked by
+ * addition. </p>
+ *
+ * <h3>Compilation</h3>
+ *
+ * <p> The rules of a domain are indexed by node and resource in one
+ * bucket.  The rules of a wildcard domain are merged into the buckets
+ * of the domains below it, so that the most specific bucket of an
+ * {@link XAddressHostTrie} holds every rule applicable to its
+ * domain.  A compiled matcher is immutable. </p>
+ *
+ * @see XAddressHostTrie
+ * @author jdp
+ */
+public class XAddressMatcher<V>
+    extends java.lang.Object
+{
+    /**
+     * Mutable rule set
+     */
+    public static class Builder<V>
+        extends java.lang.Object
+    {
+        private final static class Rule<V>
+            extends java.lang.Object
+            implements java.lang.Comparable<Rule<V>>
+        {
+            final String node, domain, resource;
+
+            final int order, sequence;
+
+            final V value;
+
+
+            Rule(String node, String domain, String resource, int order, int sequence, V value){
+                super();
+                this.node = node;
+                this.domain = domain;
+                this.resource = resource;
+                this.order = order;
+                this.sequence = sequence;
+                this.value = value;
+            }
+
+
+            public int compareTo(Rule<V> that){
+                if (this.order != that.order)
+                    return (this.order < that.order)?(-1):(1);
+                else
+                    return (this.sequence - that.sequence);
+            }
+        }
+
+
+        private final ArrayList<Rule<V>> rules = new ArrayList<Rule<V>>();
+
+
+        public Builder(){
+            super();
+        }
+
+
+        public int size(){
+            return this.rules.size();
+        }
+        /**
+         * Add a rule following the rules present.
+         *
+         * @param pattern Address pattern
+         * @param value Result of the rule
+         * @return This builder
+         */
+        public Builder<V> add(String pattern, V value){
+            final int size = this.rules.size();
+            final int order = (0 == size)?(0):(this.rules.get(size-1).order);
+            return this.add(pattern,order,value);
+        }
+        /**
+         * @param pattern Address pattern
+         * @param order Rule order, least first
+         * @param value Result of the rule
+         * @return This builder
+         */
+        public Builder<V> add(String pattern, int order, V value){
+            if (null == pattern || 0 == pattern.length() || null == value)
+                throw new IllegalArgumentException(pattern);
+            else {
+                final int slash = pattern.indexOf('/');
+                final int end = (-1 == slash)?(pattern.length()):(slash);
+                final int at = pattern.lastIndexOf('@',end-1);
+
+                final String node = (-1 == at)?(null):(pattern.substring(0,at));
+                final String domain = pattern.substring(at+1,end);
+                final String resource = (-1 == slash)?(null):(pattern.substring(slash+1));
+
+                if (0 == domain.length() || (null != node && 0 == node.length()) ||
+                    (null != resource && 0 == resource.length()))
+                {
+                    throw new IllegalArgumentException(pattern);
+                }
+                else {
+                    /*
+                     * Normalize the equivalent forms of "any"
+                     */
+                    final String n = ("*".equals(node))?("*"):(node);
+                    final String r;
+                    if ("*".equals(resource))
+                        r = null;
+                    else if (null == resource && null == n)
+                        r = null;
+                    else
+                        r = resource;
+
+                    this.rules.add(new Rule<V>(n,domain,r,order,this.rules.size(),value));
+                    return this;
+                }
+            }
+        }
+        /**
+         * @return Immutable matcher of the current rules
+         */
+        public XAddressMatcher<V> build(){
+            final ArrayList<Rule<V>> rules = new ArrayList<Rule<V>>(this.rules);
+            Collections.sort(rules);
+            final int count = rules.size();
+            final Object[] values = new Object[count];
+
+            final HashMap<String,Bucket> exact = new HashMap<String,Bucket>();
+            final HashMap<String,Bucket> wildcard = new HashMap<String,Bucket>();
+            Bucket any = null;
+
+            for (int rank = 0; rank < count; rank++){
+                final Rule<V> rule = rules.get(rank);
+                values[rank] = rule.value;
+
+                final Bucket bucket;
+                if ("*".equals(rule.domain)){
+                    if (null == any)
+                        any = new Bucket();
+                    bucket = any;
+                }
+                else {
+                    final boolean w = rule.domain.startsWith("*.");
+                    final String key = XAddressHostTrie.Lower((w)?(rule.domain.substring(2)):(rule.domain));
+                    final HashMap<String,Bucket> map = (w)?(wildcard):(exact);
+                    Bucket b = map.get(key);
+                    if (null == b){
+                        b = new Bucket();
+                        map.put(key,b);
+                    }
+                    bucket = b;
+                }
+                bucket.add(rule.node,rule.resource,rank);
+            }
+            /*
+             * Merge wildcard rules into the buckets below them
+             */
+            final XAddressHostTrie.Builder<Bucket> trie = new XAddressHostTrie.Builder<Bucket>();
+            if (null != any)
+                trie.put("*",any);
+
+            for (Map.Entry<String,Bucket> entry : wildcard.entrySet()){
+                final String domain = entry.getKey();
+                final Bucket bucket = entry.getValue().copy();
+                Merge(bucket,domain,wildcard,any);
+                trie.put("*."+domain,bucket);
+            }
+            for (Map.Entry<String,Bucket> entry : exact.entrySet()){
+                final String domain = entry.getKey();
+                final Bucket bucket = entry.getValue().copy();
+                Merge(bucket,domain,wildcard,any);
+                trie.put(domain,bucket);
+            }
+            return new XAddressMatcher<V>(trie.build(),values);
+        }
+        /**
+         * Merge the wildcard buckets of the proper suffixes of the
+         * domain, and any domain, into the bucket.
+         */
+        private final static void Merge(Bucket bucket, String domain, HashMap<String,Bucket> wildcard, Bucket any){
+            for (int dot = domain.indexOf('.'); -1 < dot; dot = domain.indexOf('.',dot+1)){
+                final Bucket suffix = wildcard.get(domain.substring(dot+1));
+                if (null != suffix)
+                    bucket.merge(suffix);
+            }
+            if (null != any)
+                bucket.merge(any);
+        }
+    }
+    /**
+     * Rule ranks of a domain
+     */
+    final static class Bucket
+        extends java.lang.Object
+    {
+        /**
+         * Any address on the domain
+         */
+        int any = Integer.MAX_VALUE;
+        /**
+         * Resource of the domain address
+         */
+        final HashMap<String,Integer> resources = new HashMap<String,Integer>();
+        /**
+         * Resource of any address on the domain
+         */
+        final HashMap<String,Integer> anyResources = new HashMap<String,Integer>();
+        /**
+         * Any resource of a node
+         */
+        final HashMap<String,Integer> nodes = new HashMap<String,Integer>();
+        /**
+         * Full address, by node then resource
+         */
+        final HashMap<String,HashMap<String,Integer>> fulls = new HashMap<String,HashMap<String,Integer>>();
+
+
+        Bucket(){
+            super();
+        }
+
+
+        void add(String node, String resource, int rank){
+            if (null == node){
+                if (null == resource)
+                    this.any = Math.min(this.any,rank);
+                else
+                    Add(this.resources,resource,rank);
+            }
+            else if ("*".equals(node)){
+                if (null == resource)
+                    this.any = Math.min(this.any,rank);
+                else
+                    Add(this.anyResources,resource,rank);
+            }
+            else if (null == resource)
+                Add(this.nodes,node,rank);
+            else {
+                HashMap<String,Integer> map = this.fulls.get(node);
+                if (null == map){
+                    map = new HashMap<String,Integer>();
+                    this.fulls.put(node,map);
+                }
+                Add(map,resource,rank);
+            }
+        }
+        void merge(Bucket that){
+            this.any = Math.min(this.any,that.any);
+            Merge(this.resources,that.resources);
+            Merge(this.anyResources,that.anyResources);
+            Merge(this.nodes,that.nodes);
+            for (Map.Entry<String,HashMap<String,Integer>> entry : that.fulls.entrySet()){
+                HashMap<String,Integer> map = this.fulls.get(entry.getKey());
+                if (null == map){
+                    map = new HashMap<String,Integer>();
+                    this.fulls.put(entry.getKey(),map);
+                }
+                Merge(map,entry.getValue());
+            }
+        }
+        Bucket copy(){
+            final Bucket copy = new Bucket();
+            copy.merge(this);
+            return copy;
+        }
+        /**
+         * @param node Node of the address, or null
+         * @param resource Resource of the address, or null
+         * @return Least rank of a matching rule, or maximum integer
+         */
+        int rank(String node, String resource){
+            int rank = this.any;
+            if (null != resource){
+                rank = Min(rank,this.anyResources.get(resource));
+                if (null == node)
+                    rank = Min(rank,this.resources.get(resource));
+            }
+            if (null != node){
+                rank = Min(rank,this.nodes.get(node));
+                if (null != resource){
+                    final HashMap<String,Integer> map = this.fulls.get(node);
+                    if (null != map)
+                        rank = Min(rank,map.get(resource));
+                }
+            }
+            return rank;
+        }
+
+
+        private final static void Add(HashMap<String,Integer> map, String key, int rank){
+            final Integer present = map.get(key);
+            if (null == present || rank < present.intValue())
+                map.put(key,rank);
+        }
+        private final static void Merge(HashMap<String,Integer> map, HashMap<String,Integer> from){
+            for (Map.Entry<String,Integer> entry : from.entrySet()){
+                Add(map,entry.getKey(),entry.getValue().intValue());
+            }
+        }
+        private final static int Min(int rank, Integer other){
+            if (null != other && other.intValue() < rank)
+                return other.intValue();
+            else
+                return rank;
+        }
+    }
+
+
+    private final XAddressHostTrie.Snapshot<Bucket> domains;
+
+    private final Object[] values;
+
+
+    XAddressMatcher(XAddressHostTrie.Snapshot<Bucket> domains, Object[] values){
+        super();
+        this.domains = domains;
+        this.values = values;
+    }
+
+
+    /**
+     * @return Number of rules
+     */
+    public int size(){
+        return this.values.length;
+    }
+    /**
+     * @param address Address
+     * @return Rank of the matching rule of least order, or negative
+     * one
+     */
+    public int rank(XAddress address){
+        if (null == address)
+            return -1;
+        else {
+            final String domain, node;
+            if (null != address.host){
+                domain = address.host;
+                node = address.identifier;
+            }
+            else {
+                domain = address.identifier;
+                node = null;
+            }
+            final Bucket bucket = this.domains.resolve(domain);
+            if (null == bucket)
+                return -1;
+            else {
+                final int rank = bucket.rank(node,address.resource);
+                if (Integer.MAX_VALUE == rank)
+                    return -1;
+                else
+                    return rank;
+            }
+        }
+    }
+    /**
+     * @param address Address
+     * @return Value of the matching rule of least order, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V match(XAddress address){
+        final int rank = this.rank(address);
+        if (-1 < rank)
+            return (V)this.values[rank];
+        else
+            return null;
+    }
+    /**
+     * @param address Address
+     * @return Some rule matches the address
+     */
+    public boolean matches(XAddress address){
+        return (-1 < this.rank(address));
+    }
+}
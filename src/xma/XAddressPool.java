@@ -0,0 +1,200 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A canonicalizing pool of {@link XAddress} instances.  Addresses
+ * having the same string form share one instance, and its one set
+ * of component strings, while any user holds a reference to it.
+ * Identity comparison between pooled addresses is then sufficient,
+ * as in the <code>this == that</code> test at the head of {@link
+ * XAddress#equals(XAddress)}.
+ *
+ * <h3>Identity</h3>
+ *
+ * <p> The pool key is the complete string form of an address, as
+ * {@link XAddress#equals(XAddress)} does not distinguish every
+ * resource. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> The pool is a concurrent map, so that lookup is not locked and
+ * there is no lock common to all users. </p>
+ *
+ * <h3>References</h3>
+ *
+ * <p> The value of an entry is a weak reference to the canonical
+ * address, keyed by the string form held by that address.  An entry
+ * is released with the last user reference to its address, and is
+ * removed from the map by the next intern, size or clear. </p>
+ *
+ * @see XAddress#intern()
+ * @author jdp
+ */
+public class XAddressPool
+    extends java.lang.Object
+{
+    /**
+     * The pool employed by {@link XAddress#intern()}
+     */
+    public final static XAddressPool Default = new XAddressPool();
+
+    /**
+     * Default concurrency, being a multiple of the number of
+     * processors
+     */
+    public final static int CONCURRENCY = (4 * Runtime.getRuntime().availableProcessors());
+
+
+    /**
+     * Weak reference to a canonical address, having the key of its
+     * entry
+     */
+    private final static class Entry
+        extends WeakReference<XAddress>
+    {
+        final String key;
+
+
+        Entry(String key, XAddress address, ReferenceQueue<XAddress> queue){
+            super(address,queue);
+            this.key = key;
+        }
+    }
+
+
+    private final ConcurrentHashMap<String,Entry> map;
+
+    private final ReferenceQueue<XAddress> queue = new ReferenceQueue<XAddress>();
+
+
+    public XAddressPool(){
+        this(CONCURRENCY);
+    }
+    /**
+     * @param concurrency Estimated number of concurrently updating
+     * threads
+     */
+    public XAddressPool(int concurrency){
+        super();
+        this.map = new ConcurrentHashMap<String,Entry>(16,0.75f,Math.max(1,concurrency));
+    }
+
+
+    /**
+     * @param address Address to be shared
+     * @return Canonical instance of the address, or null for null
+     */
+    public XAddress intern(XAddress address){
+        if (null == address)
+            return null;
+        else {
+            this.expunge();
+            /*
+             * The key is the string of the canonical address, so
+             * that a key is not retained beyond its address
+             */
+            final String key = address.toString();
+            final ConcurrentHashMap<String,Entry> map = this.map;
+            Entry entry = map.get(key);
+            if (null != entry){
+                final XAddress canonical = entry.get();
+                if (null != canonical)
+                    return canonical;
+            }
+            final Entry created = new Entry(key,address,this.queue);
+            while (true){
+                if (null == entry){
+                    entry = map.putIfAbsent(key,created);
+                    if (null == entry)
+                        return address;
+                }
+                else {
+                    final XAddress canonical = entry.get();
+                    if (null != canonical)
+                        return canonical;
+                    /*
+                     * Remove the entry of a released address, so that
+                     * the map key is the string of this address
+                     */
+                    else if (map.remove(key,entry))
+                        entry = null;
+                    else
+                        entry = map.get(key);
+                }
+            }
+        }
+    }
+    /**
+     * Lookup by string form before parsing.  A canonical address is
+     * returned without parsing the input.
+     *
+     * @param string A part or whole XMPP address
+     * @return Canonical instance of the address
+     * @exception java.lang.IllegalArgumentException For invalid input
+     */
+    public XAddress intern(String string){
+        final XAddress canonical = this.get(string);
+        if (null != canonical)
+            return canonical;
+        else
+            return this.intern(new XAddress(string));
+    }
+    /**
+     * @param string String form of an address
+     * @return Canonical instance of the address, or null when not
+     * present
+     */
+    public XAddress get(String string){
+        if (null == string)
+            return null;
+        else {
+            final Entry entry = this.map.get(string);
+            if (null != entry)
+                return entry.get();
+            else
+                return null;
+        }
+    }
+    /**
+     * @return Approximate number of addresses in the pool
+     */
+    public int size(){
+        this.expunge();
+        return this.map.size();
+    }
+    public void clear(){
+        this.map.clear();
+        this.expunge();
+    }
+    /**
+     * Remove the entries of released addresses
+     */
+    private void expunge(){
+        Object reference;
+        while (null != (reference = this.queue.poll())){
+            final Entry entry = (Entry)reference;
+            this.map.remove(entry.key,entry);
+        }
+    }
+}
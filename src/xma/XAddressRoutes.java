@@ -0,0 +1,266 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A routing table from bare address to the full addresses of its
+ * active resources, as for multiple resources of one logon.
+ *
+ * <h3>Priority</h3>
+ *
+ * <p> The resources of a bare address are ordered by presence
+ * priority, highest first, and most recently bound first among
+ * equals.  The best resource for a message to the bare address is
+ * the first, when its priority is not negative. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> The resources of a bare address are an immutable {@link
+ * XAddressRoutes.Route} replaced on bind and unbind by compare and
+ * set, so reads are not locked. </p>
+ *
+ * @author jdp
+ */
+public class XAddressRoutes
+    extends java.lang.Object
+{
+    /**
+     * Immutable list of the full addresses of a bare address, in
+     * order of priority
+     */
+    public final static class Route
+        extends java.lang.Object
+    {
+        private final XAddress[] addresses;
+
+        private final int[] priorities;
+
+
+        Route(XAddress address, int priority){
+            super();
+            this.addresses = new XAddress[]{address};
+            this.priorities = new int[]{priority};
+        }
+        private Route(XAddress[] addresses, int[] priorities){
+            super();
+            this.addresses = addresses;
+            this.priorities = priorities;
+        }
+
+
+        public int size(){
+            return this.addresses.length;
+        }
+        public XAddress address(int index){
+            return this.addresses[index];
+        }
+        public int priority(int index){
+            return this.priorities[index];
+        }
+        /**
+         * @return Resource of highest non negative priority, or null
+         */
+        public XAddress best(){
+            if (-1 < this.priorities[0])
+                return this.addresses[0];
+            else
+                return null;
+        }
+        /**
+         * @return Copy of full addresses in order of priority
+         */
+        public XAddress[] toArray(){
+            return this.addresses.clone();
+        }
+        /**
+         * @param full Full address
+         * @return Index of the resource, or negative one
+         */
+        public int indexOf(XAddress full){
+            final XAddress[] addresses = this.addresses;
+            for (int cc = 0, len = addresses.length; cc < len; cc++){
+                if (addresses[cc] == full || addresses[cc].full.equals(full.full))
+                    return cc;
+            }
+            return -1;
+        }
+        /**
+         * @return Route having the resource at priority
+         */
+        Route add(XAddress full, int priority){
+            final Route route = this.remove(full);
+            final int count = ((null != route)?(route.size()):(0));
+            final XAddress[] addresses = new XAddress[count+1];
+            final int[] priorities = new int[count+1];
+            int index = 0;
+            while (index < count && priority < route.priorities[index]){
+                index += 1;
+            }
+            if (0 < index){
+                System.arraycopy(route.addresses,0,addresses,0,index);
+                System.arraycopy(route.priorities,0,priorities,0,index);
+            }
+            addresses[index] = full;
+            priorities[index] = priority;
+            if (index < count){
+                System.arraycopy(route.addresses,index,addresses,index+1,count-index);
+                System.arraycopy(route.priorities,index,priorities,index+1,count-index);
+            }
+            return new Route(addresses,priorities);
+        }
+        /**
+         * @return Route without the resource, or this route when not
+         * present, or null for empty
+         */
+        Route remove(XAddress full){
+            final int index = this.indexOf(full);
+            if (-1 == index)
+                return this;
+            else {
+                final int count = (this.addresses.length-1);
+                if (0 == count)
+                    return null;
+                else {
+                    final XAddress[] addresses = new XAddress[count];
+                    final int[] priorities = new int[count];
+                    System.arraycopy(this.addresses,0,addresses,0,index);
+                    System.arraycopy(this.priorities,0,priorities,0,index);
+                    System.arraycopy(this.addresses,index+1,addresses,index,count-index);
+                    System.arraycopy(this.priorities,index+1,priorities,index,count-index);
+                    return new Route(addresses,priorities);
+                }
+            }
+        }
+    }
+
+
+    private final ConcurrentHashMap<String,Route> routes;
+
+
+    public XAddressRoutes(){
+        this(16);
+    }
+    /**
+     * @param capacity Expected number of bare addresses
+     */
+    public XAddressRoutes(int capacity){
+        super();
+        this.routes = new ConcurrentHashMap<String,Route>(capacity,0.75f,XAddressPool.CONCURRENCY);
+    }
+
+
+    /**
+     * @return Number of bare addresses
+     */
+    public int size(){
+        return this.routes.size();
+    }
+    /**
+     * @param address Bare or full address
+     * @return Resources of the bare address, or null
+     */
+    public Route get(XAddress address){
+        return this.routes.get(XAddressKey.BareForm(address));
+    }
+    /**
+     * @param bare Logon or identifier
+     * @return Resources of the bare address, or null
+     */
+    public Route get(String bare){
+        return this.routes.get(bare);
+    }
+    /**
+     * @param address Bare or full address
+     * @return Resource of highest non negative priority, or null
+     */
+    public XAddress best(XAddress address){
+        final Route route = this.get(address);
+        if (null != route)
+            return route.best();
+        else
+            return null;
+    }
+    /**
+     * @param address Bare or full address
+     * @return Resources of the bare address, in order of priority
+     */
+    public XAddress[] all(XAddress address){
+        final Route route = this.get(address);
+        if (null != route)
+            return route.toArray();
+        else
+            return new XAddress[0];
+    }
+    /**
+     * Add a resource, or change its priority.
+     *
+     * @param full Full address
+     * @param priority Presence priority
+     */
+    public void bind(XAddress full, int priority){
+        if (null == full || null == full.resource)
+            throw new IllegalArgumentException(String.valueOf(full));
+        else {
+            final String bare = XAddressKey.BareForm(full);
+            while (true){
+                final Route route = this.routes.get(bare);
+                if (null == route){
+                    if (null == this.routes.putIfAbsent(bare,new Route(full,priority)))
+                        return;
+                }
+                else if (this.routes.replace(bare,route,route.add(full,priority)))
+                    return;
+            }
+        }
+    }
+    /**
+     * Remove a resource.
+     *
+     * @param full Full address
+     * @return Resource was present
+     */
+    public boolean unbind(XAddress full){
+        if (null == full || null == full.resource)
+            return false;
+        else {
+            final String bare = XAddressKey.BareForm(full);
+            while (true){
+                final Route route = this.routes.get(bare);
+                if (null == route)
+                    return false;
+                else {
+                    final Route next = route.remove(full);
+                    if (route == next)
+                        return false;
+                    else if (null == next){
+                        if (this.routes.remove(bare,route))
+                            return true;
+                    }
+                    else if (this.routes.replace(bare,route,next))
+                        return true;
+                }
+            }
+        }
+    }
+    public void clear(){
+        this.routes.clear();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Serial form of {@link XAddress}, replacing the default form of its
+ * seven strings with the identifier, host and resource components.
+ * The derived fields are recomputed by the constructor on reading.
+ *
+ * <h3>Format</h3>
+ * <pre>
+ * flags       byte: class (2 bits), host (1), resource (1), host object (1)
+ * identifier  varint length, UTF-8
+ * host        varint length, UTF-8; or a string object
+ * resource    varint length, UTF-8
+ * </pre>
+ *
+ * <p> Each varint length is at most 3071 bytes, the length of an
+ * XMPP address, and a longer length in a stream is invalid. </p>
+ *
+ * <p> A host written as a string object is written once per object
+ * stream, and later as a back reference.  Registered hosts are
+ * canonical instances from {@link XAddressDictionary#Hosts}, so a
+ * stream of addresses on a few hosts carries each host once.  This is
+ * disabled by the system property
+ * <code>xma.XAddressSerial.hosts=false</code>. </p>
+ *
+ * <p> Addresses read are interned in {@link XAddressPool#Default}
+ * when the system property <code>xma.XAddressSerial.intern=true</code>.
+ * </p>
+ *
+ * @author jdp
+ */
+final class XAddressSerial
+    extends java.lang.Object
+    implements java.io.Externalizable
+{
+    public final static long serialVersionUID = 1L;
+
+    final static boolean HOSTS = (!"false".equals(System.getProperty("xma.XAddressSerial.hosts")));
+
+    final static boolean INTERN = ("true".equals(System.getProperty("xma.XAddressSerial.intern")));
+
+    /**
+     * Maximum length of a component in UTF-8 bytes
+     */
+    final static int LENGTH = 3071;
+
+    private final static int CLASS_ADDRESS = 0;
+    private final static int CLASS_IDENTIFIER = 1;
+    private final static int CLASS_LOGON = 2;
+    private final static int CLASS_FULL = 3;
+    private final static int CLASS_MASK = 3;
+    private final static int FLAG_HOST = 4;
+    private final static int FLAG_RESOURCE = 8;
+    private final static int FLAG_HOST_OBJECT = 16;
+
+
+    private XAddress address;
+
+
+    /**
+     * Required for reading
+     */
+    public XAddressSerial(){
+        super();
+    }
+    XAddressSerial(XAddress address){
+        super();
+        this.address = address;
+    }
+
+
+    public void writeExternal(ObjectOutput out)
+        throws IOException
+    {
+        final XAddress address = this.address;
+        int flags;
+        if (address instanceof XAddress.Full)
+            flags = CLASS_FULL;
+        else if (address instanceof XAddress.Logon)
+            flags = CLASS_LOGON;
+        else if (address instanceof XAddress.Identifier)
+            flags = CLASS_IDENTIFIER;
+        else
+            flags = CLASS_ADDRESS;
+
+        if (null != address.host){
+            flags |= FLAG_HOST;
+            if (HOSTS)
+                flags |= FLAG_HOST_OBJECT;
+        }
+        if (null != address.resource)
+            flags |= FLAG_RESOURCE;
+
+        out.writeByte(flags);
+        Write(out,address.identifier);
+        if (null != address.host){
+            if (HOSTS)
+                out.writeObject(address.host);
+            else
+                Write(out,address.host);
+        }
+        if (null != address.resource)
+            Write(out,address.resource);
+    }
+    public void readExternal(ObjectInput in)
+        throws IOException, ClassNotFoundException
+    {
+        final int flags = in.readUnsignedByte();
+        final StringBuilder string = new StringBuilder();
+        string.append(Read(in));
+        if (0 != (flags & FLAG_HOST)){
+            string.append('@');
+            if (0 != (flags & FLAG_HOST_OBJECT)){
+                final Object host = in.readObject();
+                if (host instanceof String)
+                    string.append((String)host);
+                else
+                    throw new InvalidObjectException("host");
+            }
+            else
+                string.append(Read(in));
+        }
+        if (0 != (flags & FLAG_RESOURCE)){
+            if (0 == (flags & FLAG_HOST))
+                throw new InvalidObjectException("resource");
+            else {
+                string.append('/');
+                string.append(Read(in));
+            }
+        }
+        final String input = string.toString();
+        try {
+            switch(flags & CLASS_MASK){
+            case CLASS_IDENTIFIER:
+                this.address = new XAddress.Identifier(input);
+                break;
+            case CLASS_LOGON:
+                this.address = new XAddress.Logon(input);
+                break;
+            case CLASS_FULL:
+                this.address = new XAddress.Full(input);
+                break;
+            default:
+                this.address = new XAddress(input);
+                break;
+            }
+        }
+        catch (IllegalArgumentException exc){
+            throw new InvalidObjectException(input);
+        }
+    }
+    protected Object readResolve(){
+        if (INTERN)
+            return this.address.intern();
+        else
+            return this.address;
+    }
+
+
+    /**
+     * Write varint length and UTF-8
+     */
+    final static void Write(ObjectOutput out, String string)
+        throws IOException
+    {
+        final byte[] bytes = string.getBytes(XAddress.UTF8);
+        int length = bytes.length;
+        if (LENGTH < length)
+            throw new InvalidObjectException("length");
+        while (0x7F < length){
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+        out.write(bytes);
+    }
+    /**
+     * Read varint length and UTF-8
+     */
+    final static String Read(ObjectInput in)
+        throws IOException
+    {
+        int length = 0;
+        for (int shift = 0; ; shift += 7){
+            if (28 < shift)
+                throw new InvalidObjectException("length");
+            else {
+                final int b = in.readUnsignedByte();
+                length |= ((b & 0x7F) << shift);
+                if (0 == (b & 0x80))
+                    break;
+            }
+        }
+        if (0 > length || LENGTH < length)
+            throw new InvalidObjectException("length");
+        else {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes,XAddress.UTF8);
+        }
+    }
+}
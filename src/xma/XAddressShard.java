@@ -0,0 +1,313 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * Sharding of bare addresses to cluster nodes, so that all resources
+ * of a logon are assigned to one node.  The key of an address is its
+ * {@link XAddressHash#Bare64(XAddress) bare hash}.
+ *
+ * <h3>Jump</h3>
+ *
+ * <p> The {@link #jump(XAddress) jump} assignment is the jump
+ * consistent hash of Lamping and Veach over a list of node slots.  It
+ * has no memory cost beyond the slots and ideal balance.  Removing a
+ * node other than the last leaves its slot vacant, and a key landing
+ * on a vacant slot is hashed again to another slot, so that only the
+ * keys of the removed node move.  Adding a node fills the first
+ * vacant slot, or adds a slot, and moves only the keys of one node.
+ * Each vacant slot adds to the expected cost of a lookup in the
+ * proportion of vacant slots. </p>
+ *
+ * <h3>Rendezvous</h3>
+ *
+ * <p> The {@link #rendezvous(XAddress) rendezvous} assignment is the
+ * node of highest weighted random score for the key.  Its cost is in
+ * the number of nodes.  Adding or removing any node moves only the
+ * keys of that node, and a node receives keys in proportion to its
+ * weight. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> The nodes are an immutable list replaced on add and remove, so
+ * lookups are not locked. </p>
+ *
+ * @author jdp
+ */
+public class XAddressShard<N>
+    extends java.lang.Object
+{
+    /**
+     * Immutable list of nodes in order of addition
+     */
+    private final static class Nodes
+        extends java.lang.Object
+    {
+        final static Nodes Empty = new Nodes(new String[0],new long[0],new double[0],new Object[0],new int[0]);
+
+
+        final String[] names;
+
+        final long[] hashes;
+
+        final double[] weights;
+
+        final Object[] values;
+        /**
+         * Jump slots to node indices, or negative one for a vacant
+         * slot.  The last slot is not vacant.
+         */
+        final int[] slots;
+
+
+        Nodes(String[] names, long[] hashes, double[] weights, Object[] values, int[] slots){
+            super();
+            this.names = names;
+            this.hashes = hashes;
+            this.weights = weights;
+            this.values = values;
+            this.slots = slots;
+        }
+
+
+        int indexOf(String name){
+            final String[] names = this.names;
+            for (int cc = 0, len = names.length; cc < len; cc++){
+                if (names[cc].equals(name))
+                    return cc;
+            }
+            return -1;
+        }
+        Nodes add(String name, double weight, Object value){
+            final int count = this.names.length;
+            final String[] names = new String[count+1];
+            final long[] hashes = new long[count+1];
+            final double[] weights = new double[count+1];
+            final Object[] values = new Object[count+1];
+            System.arraycopy(this.names,0,names,0,count);
+            System.arraycopy(this.hashes,0,hashes,0,count);
+            System.arraycopy(this.weights,0,weights,0,count);
+            System.arraycopy(this.values,0,values,0,count);
+            names[count] = name;
+            hashes[count] = XAddressHash.Hash64(name,XAddressHash.SEED);
+            weights[count] = weight;
+            values[count] = value;
+
+            int slot = 0;
+            while (slot < this.slots.length && -1 != this.slots[slot]){
+                slot += 1;
+            }
+            final int[] slots = new int[Math.max(this.slots.length,(slot+1))];
+            System.arraycopy(this.slots,0,slots,0,this.slots.length);
+            slots[slot] = count;
+
+            return new Nodes(names,hashes,weights,values,slots);
+        }
+        Nodes remove(int index){
+            final int count = (this.names.length-1);
+            final String[] names = new String[count];
+            final long[] hashes = new long[count];
+            final double[] weights = new double[count];
+            final Object[] values = new Object[count];
+            System.arraycopy(this.names,0,names,0,index);
+            System.arraycopy(this.hashes,0,hashes,0,index);
+            System.arraycopy(this.weights,0,weights,0,index);
+            System.arraycopy(this.values,0,values,0,index);
+            System.arraycopy(this.names,index+1,names,index,count-index);
+            System.arraycopy(this.hashes,index+1,hashes,index,count-index);
+            System.arraycopy(this.weights,index+1,weights,index,count-index);
+            System.arraycopy(this.values,index+1,values,index,count-index);
+            /*
+             * Vacate the slot of the node, and drop vacant slots from
+             * the end
+             */
+            int length = this.slots.length;
+            while (0 < length && (index == this.slots[length-1] || -1 == this.slots[length-1])){
+                length -= 1;
+            }
+            final int[] slots = new int[length];
+            for (int cc = 0; cc < length; cc++){
+                final int node = this.slots[cc];
+                if (index == node)
+                    slots[cc] = -1;
+                else if (index < node)
+                    slots[cc] = (node-1);
+                else
+                    slots[cc] = node;
+            }
+            return new Nodes(names,hashes,weights,values,slots);
+        }
+    }
+
+
+    private volatile Nodes nodes = Nodes.Empty;
+
+
+    public XAddressShard(){
+        super();
+    }
+
+
+    /**
+     * @return Number of nodes
+     */
+    public int size(){
+        return this.nodes.names.length;
+    }
+    /**
+     * @return Names of nodes in order of addition
+     */
+    public String[] names(){
+        return this.nodes.names.clone();
+    }
+    /**
+     * @param name Unique and stable node name
+     * @param value Node
+     */
+    public void add(String name, N value){
+        this.add(name,1.0,value);
+    }
+    /**
+     * @param name Unique and stable node name, the identity of the
+     * node for rendezvous
+     * @param weight Relative capacity of the node for rendezvous
+     * @param value Node
+     */
+    public synchronized void add(String name, double weight, N value){
+        if (null == name || null == value || !(0.0 < weight))
+            throw new IllegalArgumentException(name);
+        else if (-1 < this.nodes.indexOf(name))
+            throw new IllegalStateException(name);
+        else
+            this.nodes = this.nodes.add(name,weight,value);
+    }
+    /**
+     * @param name Node name
+     * @return Node was present
+     */
+    public synchronized boolean remove(String name){
+        final int index = this.nodes.indexOf(name);
+        if (-1 < index){
+            this.nodes = this.nodes.remove(index);
+            return true;
+        }
+        else
+            return false;
+    }
+    /**
+     * @param address Bare or full address
+     * @return Node by jump consistent hash, or null for no nodes
+     */
+    public N jump(XAddress address){
+        return this.jump(XAddressHash.Bare64(address));
+    }
+    /**
+     * @param address A part or whole XMPP address, not parsed
+     * @return Node by jump consistent hash, or null for no nodes
+     */
+    public N jump(CharSequence address){
+        return this.jump(XAddressHash.Bare64(address));
+    }
+    /**
+     * @param address Bare or full address
+     * @return Node by weighted rendezvous hash, or null for no nodes
+     */
+    public N rendezvous(XAddress address){
+        return this.rendezvous(XAddressHash.Bare64(address));
+    }
+    /**
+     * @param address A part or whole XMPP address, not parsed
+     * @return Node by weighted rendezvous hash, or null for no nodes
+     */
+    public N rendezvous(CharSequence address){
+        return this.rendezvous(XAddressHash.Bare64(address));
+    }
+    @SuppressWarnings("unchecked")
+    private N jump(long key){
+        final Nodes nodes = this.nodes;
+        final int[] slots = nodes.slots;
+        final int count = slots.length;
+        if (0 == count)
+            return null;
+        else {
+            int node = slots[Jump(key,count)];
+            while (-1 == node){
+                /*
+                 * Weyl increment, as the finalizer fixes zero
+                 */
+                key = XAddressHash.Mix64(key + 0x9E3779B97F4A7C15L);
+                node = slots[Jump(key,count)];
+            }
+            return (N)nodes.values[node];
+        }
+    }
+    @SuppressWarnings("unchecked")
+    private N rendezvous(long key){
+        final Nodes nodes = this.nodes;
+        if (0 == nodes.values.length)
+            return null;
+        else
+            return (N)nodes.values[Rendezvous(key,nodes.hashes,nodes.weights)];
+    }
+
+
+    /**
+     * Jump consistent hash of Lamping and Veach.
+     *
+     * @param key Key hash
+     * @param buckets Number of buckets
+     * @return Bucket index
+     */
+    public final static int Jump(long key, int buckets){
+        long b = -1L, j = 0L;
+        while (j < buckets){
+            b = j;
+            key = (key * 2862933555777941757L) + 1L;
+            j = (long)((b + 1L) * ((double)(1L << 31) / (double)((key >>> 33) + 1L)));
+        }
+        return (int)b;
+    }
+    /**
+     * Weighted rendezvous hash.  The score of a node is
+     * <code>-weight/ln(u)</code> for a uniform variate
+     * <code>u</code> in (0,1) from the key and the node.
+     *
+     * @param key Key hash
+     * @param nodes Node hashes
+     * @param weights Node weights
+     * @return Index of the node of highest score
+     */
+    public final static int Rendezvous(long key, long[] nodes, double[] weights){
+        int best = 0;
+        double score = Double.NEGATIVE_INFINITY;
+        for (int cc = 0, len = nodes.length; cc < len; cc++){
+            final long h = XAddressHash.Mix64(key ^ nodes[cc]);
+            /*
+             * Fifty three bits in (0,1)
+             */
+            final double u = (((h >>> 11) + 0.5) / 9007199254740992.0);
+            final double s = (-weights[cc] / Math.log(u));
+            if (s > score){
+                score = s;
+                best = cc;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An append only store of addresses in a memory mapped file.  Each
+ * address is stored once with its component offsets, and is
+ * identified by its position in the file.  Addresses are read
+ * through a {@link XAddressStore.View} that implements
+ * <code>CharSequence</code> over the mapped record, as {@link
+ * XAddress} does over its strings.
+ *
+ * <h3>File</h3>
+ * <pre>
+ * header = magic(4) version(4) count(8) end(8) segment(4) reserved
+ * record = length(4) offsets(8) characters
+ * </pre>
+ *
+ * <p> A record length has its high bit set for characters stored in
+ * one byte (ISO 8859-1), otherwise characters are stored in two
+ * bytes (UTF-16).  The offsets are the result of {@link
+ * XAddress#Offsets(java.lang.CharSequence)}.  The file is mapped in
+ * segments, and a record is never divided between segments.  The
+ * last segment is mapped from a small size, doubled as records are
+ * added, so that the file grows with its content. </p>
+ *
+ * <h3>Reopen</h3>
+ *
+ * <p> Opening an existing file maps its segments without reading
+ * its records.  Record positions are stable across restarts. </p>
+ *
+ * <h3>Concurrency</h3>
+ *
+ * <p> Writers are serialized on the store.  Readers are not locked,
+ * and read positions returned from the writer. </p>
+ *
+ * @author jdp
+ */
+public class XAddressStore
+    extends java.lang.Object
+    implements java.io.Closeable
+{
+    /**
+     * Default segment size
+     */
+    public final static int SEGMENT = (1 << 30);
+    /**
+     * Initial mapped size of a segment
+     */
+    public final static int INITIAL = (1 << 16);
+
+    private final static int MAGIC = 0x584D4153;
+    private final static int VERSION = 1;
+    private final static int HEADER = 64;
+    private final static int RECORD = 12;
+    private final static int LATIN1 = 0x80000000;
+
+
+    /**
+     * A flyweight view of a record in the store is repositioned with
+     * {@link #moveTo(long)} for reuse.  A view is not a key for hash
+     * collections, as its content is not fixed.
+     */
+    public final static class View
+        extends java.lang.Object
+        implements java.lang.CharSequence
+    {
+        private final XAddressStore store;
+
+        private MappedByteBuffer segment;
+
+        private int base, length;
+
+        private boolean latin1;
+
+        private long position, offsets;
+
+
+        View(XAddressStore store){
+            super();
+            this.store = store;
+        }
+
+
+        /**
+         * @param position Record position from the store
+         * @return This view of the record
+         */
+        public View moveTo(long position){
+            final MappedByteBuffer segment = this.store.segment(position);
+            final int base = this.store.offset(position);
+            final int header = segment.getInt(base);
+
+            this.segment = segment;
+            this.position = position;
+            this.latin1 = (0 != (header & LATIN1));
+            this.length = (header & ~LATIN1);
+            this.offsets = segment.getLong(base+4);
+            this.base = (base+RECORD);
+            return this;
+        }
+        /**
+         * @return Record position in the store
+         */
+        public long position(){
+            return this.position;
+        }
+        /**
+         * @return Delimiter offsets as for {@link
+         * XAddress#Offsets(java.lang.CharSequence)}
+         */
+        public long offsets(){
+            return this.offsets;
+        }
+        public boolean hasHost(){
+            return (-1 < XAddress.IndexOfHost(this.offsets));
+        }
+        public boolean hasResource(){
+            return (-1 < XAddress.IndexOfSlash(this.offsets));
+        }
+        public String identifier(){
+            final int indexOfHost = XAddress.IndexOfHost(this.offsets);
+            if (-1 < indexOfHost)
+                return this.substring(0,indexOfHost);
+            else
+                return this.toString();
+        }
+        /**
+         * @return Null for an identifier
+         */
+        public String host(){
+            final int indexOfHost = XAddress.IndexOfHost(this.offsets);
+            if (-1 < indexOfHost){
+                final int indexOfSlash = XAddress.IndexOfSlash(this.offsets);
+                if (-1 < indexOfSlash)
+                    return this.substring(indexOfHost+1,indexOfSlash);
+                else
+                    return this.substring(indexOfHost+1,this.length);
+            }
+            else
+                return null;
+        }
+        /**
+         * @return Null for an identifier or logon
+         */
+        public String resource(){
+            final int indexOfSlash = XAddress.IndexOfSlash(this.offsets);
+            if (-1 < indexOfSlash)
+                return this.substring(indexOfSlash+1,this.length);
+            else
+                return null;
+        }
+        public XAddress toXAddress(){
+            return new XAddress(this.toString());
+        }
+        public int length(){
+            return this.length;
+        }
+        public char charAt(int index){
+            if (-1 < index && index < this.length){
+                if (this.latin1)
+                    return (char)(this.segment.get(this.base+index) & 0xFF);
+                else
+                    return this.segment.getChar(this.base+(index << 1));
+            }
+            else
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        public CharSequence subSequence(int start, int end){
+            return this.substring(start,end);
+        }
+        public String substring(int start, int end){
+            if (0 > start || end > this.length || start > end)
+                throw new IndexOutOfBoundsException();
+            else {
+                final char[] string = new char[end-start];
+                for (int cc = start; cc < end; cc++){
+                    string[cc-start] = this.charAt(cc);
+                }
+                return new String(string);
+            }
+        }
+        /**
+         * @return Content equals
+         */
+        public boolean contentEquals(CharSequence that){
+            final int length = this.length;
+            if (null != that && length == that.length()){
+                for (int cc = 0; cc < length; cc++){
+                    if (this.charAt(cc) != that.charAt(cc))
+                        return false;
+                }
+                return true;
+            }
+            else
+                return false;
+        }
+        public String toString(){
+            return this.substring(0,this.length);
+        }
+    }
+
+
+    public final File file;
+
+    public final int segmentSize;
+
+    private final RandomAccessFile io;
+
+    private final FileChannel channel;
+
+    private volatile MappedByteBuffer[] segments;
+
+    private volatile long count, end;
+
+
+    /**
+     * Open or create a store with the default segment size.
+     *
+     * @param file Store file
+     */
+    public XAddressStore(File file)
+        throws IOException
+    {
+        this(file,SEGMENT);
+    }
+    /**
+     * Open or create a store.
+     *
+     * @param file Store file
+     * @param segmentSize Segment size for a new file, ignored for an
+     * existing file
+     * @exception java.lang.IllegalArgumentException For a segment size
+     * less than the file header
+     */
+    public XAddressStore(File file, int segmentSize)
+        throws IOException
+    {
+        super();
+        if (HEADER > segmentSize)
+            throw new IllegalArgumentException(String.valueOf(segmentSize));
+        this.file = file;
+        this.io = new RandomAccessFile(file,"rw");
+        this.channel = this.io.getChannel();
+        boolean open = false;
+        try {
+            if (HEADER <= this.io.length()){
+
+                this.io.seek(0L);
+                if (MAGIC != this.io.readInt())
+                    throw new IOException("Not an address store: "+file);
+                else if (VERSION != this.io.readInt())
+                    throw new IOException("Unrecognized address store version: "+file);
+                else {
+                    this.count = this.io.readLong();
+                    this.end = this.io.readLong();
+                    this.segmentSize = this.io.readInt();
+                    if (HEADER > this.segmentSize)
+                        throw new IOException("Invalid address store segment: "+file);
+                }
+            }
+            else {
+                this.segmentSize = segmentSize;
+                this.count = 0L;
+                this.end = HEADER;
+            }
+            /*
+             * The last segment is mapped to the length of the file
+             */
+            final int last = (int)((this.end - 1L) / this.segmentSize);
+            final long base = (((long)last) * this.segmentSize);
+            this.segments = new MappedByteBuffer[0];
+            this.map(last,(int)Math.min(this.segmentSize,(Math.max(this.io.length(),this.end) - base)));
+
+            this.writeHeader();
+
+            open = true;
+        }
+        finally {
+            if (!open){
+                this.channel.close();
+                this.io.close();
+            }
+        }
+    }
+
+
+    /**
+     * @return Number of addresses
+     */
+    public long count(){
+        return this.count;
+    }
+    /**
+     * @return Position of the first record, or negative one for
+     * none
+     */
+    public long first(){
+        if (0L < this.count){
+            /*
+             * A first record not fitting after the header is in the
+             * second segment
+             */
+            if (this.segmentSize - HEADER < RECORD || 0 == this.segment(HEADER).getInt(HEADER))
+                return this.segmentSize;
+            else
+                return HEADER;
+        }
+        else
+            return -1L;
+    }
+    /**
+     * @param position Record position
+     * @return Position of the following record, or negative one for
+     * none
+     */
+    public long next(long position){
+        final int header = this.segment(position).getInt(this.offset(position));
+        final int length = (header & ~LATIN1);
+        long next = (position + RECORD + ((0 != (header & LATIN1))?(length):(length << 1)));
+        if (next >= this.end)
+            return -1L;
+        else {
+            /*
+             * Zero length marks the padded end of a segment
+             */
+            if (this.segmentSize - (next % this.segmentSize) < RECORD ||
+                0 == this.segment(next).getInt(this.offset(next)))
+            {
+                next = (((next / this.segmentSize) + 1L) * this.segmentSize);
+                if (next >= this.end)
+                    return -1L;
+            }
+            return next;
+        }
+    }
+    /**
+     * Append an address.
+     *
+     * @param address A part or whole XMPP address
+     * @return Record position
+     * @exception java.lang.IllegalArgumentException For invalid input
+     */
+    public synchronized long add(CharSequence address)
+        throws IOException
+    {
+        final long offsets = XAddress.Offsets(address);
+        if (XAddress.Status.Valid != XAddress.Validate(offsets,((null != address)?(address.length()):(0)),XAddress.Require.Identifier))
+            throw new IllegalArgumentException(String.valueOf(address));
+        else {
+            final int length = address.length();
+            boolean latin1 = true;
+            for (int cc = 0; cc < length; cc++){
+                if (0xFF < address.charAt(cc)){
+                    latin1 = false;
+                    break;
+                }
+            }
+            final int size = (RECORD + ((latin1)?(length):(length << 1)));
+            if (size > this.segmentSize)
+                throw new IllegalArgumentException(String.valueOf(address));
+            else {
+                long position = this.end;
+                if (size > (this.segmentSize - (position % this.segmentSize)))
+                    position = (((position / this.segmentSize) + 1L) * this.segmentSize);
+
+                final int index = (int)(position / this.segmentSize);
+                final int offset = this.offset(position);
+                if (index >= this.segments.length || (offset + size) > this.segments[index].capacity())
+                    this.map(index,(offset + size));
+
+                final MappedByteBuffer segment = this.segments[index];
+                segment.putLong(offset+4,offsets);
+                if (latin1){
+                    for (int cc = 0, p = (offset+RECORD); cc < length; cc++, p++){
+                        segment.put(p,(byte)address.charAt(cc));
+                    }
+                    segment.putInt(offset,(length|LATIN1));
+                }
+                else {
+                    for (int cc = 0, p = (offset+RECORD); cc < length; cc++, p += 2){
+                        segment.putChar(p,address.charAt(cc));
+                    }
+                    segment.putInt(offset,length);
+                }
+                this.count += 1L;
+                this.end = (position + size);
+
+                this.writeHeader();
+
+                return position;
+            }
+        }
+    }
+    /**
+     * @return A new view for {@link View#moveTo(long)}
+     */
+    public View view(){
+        return new View(this);
+    }
+    /**
+     * @param position Record position
+     * @return A new view of the record
+     */
+    public View get(long position){
+        return new View(this).moveTo(position);
+    }
+    /**
+     * Write mapped content to the file.
+     */
+    public synchronized void force(){
+        for (MappedByteBuffer segment : this.segments){
+            segment.force();
+        }
+    }
+    public synchronized void close()
+        throws IOException
+    {
+        this.force();
+        this.channel.close();
+        this.io.close();
+    }
+    private MappedByteBuffer segment(long position){
+        if (HEADER <= position && position < this.end)
+            return this.segments[(int)(position / this.segmentSize)];
+        else
+            throw new IndexOutOfBoundsException(String.valueOf(position));
+    }
+    private int offset(long position){
+        return (int)(position % this.segmentSize);
+    }
+    /**
+     * Map the last segment to hold a required size, doubling its
+     * mapped size from {@link #INITIAL}.  The segments preceding it
+     * are mapped in full.
+     *
+     * @param index Index of the last segment, not less than the
+     * current last segment
+     * @param required Least mapped size of the segment
+     */
+    private void map(int index, int required)
+        throws IOException
+    {
+        final MappedByteBuffer[] segments = this.segments;
+        final MappedByteBuffer[] copier = new MappedByteBuffer[index+1];
+        System.arraycopy(segments,0,copier,0,segments.length);
+        for (int cc = Math.max(0,(segments.length-1)); cc < index; cc++){
+            if (null == copier[cc] || this.segmentSize > copier[cc].capacity())
+                copier[cc] = this.channel.map(FileChannel.MapMode.READ_WRITE,(((long)cc) * this.segmentSize),this.segmentSize);
+        }
+        int size = (null != copier[index])?(copier[index].capacity()):(Math.min(INITIAL,this.segmentSize));
+        while (size < required){
+            size = (int)Math.min((((long)size) << 1),this.segmentSize);
+        }
+        if (null == copier[index] || size > copier[index].capacity())
+            copier[index] = this.channel.map(FileChannel.MapMode.READ_WRITE,(((long)index) * this.segmentSize),size);
+
+        this.segments = copier;
+    }
+    private void writeHeader(){
+        final MappedByteBuffer header = this.segments[0];
+        header.putInt(0,MAGIC);
+        header.putInt(4,VERSION);
+        header.putLong(8,this.count);
+        header.putLong(16,this.end);
+        header.putInt(24,this.segmentSize);
+    }
+}
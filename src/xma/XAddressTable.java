@@ -0,0 +1,447 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * A global table of address components represents an address as a
+ * 64 bit handle, for collections of addresses held in
+ * <code>long[]</code> rather than <code>XAddress[]</code>.
+ * <pre>
+ * handle = identifier(28) | host(16) | resource(20)
+ * </pre>
+ *
+ * <p> Each field holds one plus the identifier of its component
+ * string in a {@link XAddressDictionary}, or zero for a missing
+ * component.  The table has its own dictionary of each component,
+ * including hosts, so that a table filled by its input does not fill
+ * {@link XAddressDictionary#Hosts}.  The handle zero is not an
+ * address. </p>
+ *
+ * <h3>Identity</h3>
+ *
+ * <p> The static methods {@link #Equals(long,long)}, {@link
+ * #Compare(long,long)} and {@link #ToString(long)} have the
+ * semantics of the corresponding methods of {@link XAddress} over
+ * handles in the {@link #Default} table.  Equals is performed over
+ * component identifiers, and compare over component strings without
+ * concatenation. </p>
+ *
+ * <p> The {@link #HashCode(long)} of a handle is a mix of its
+ * component identifiers, distinguishing the handles of one table as
+ * the hash code of an address distinguishes its string.  It depends
+ * on the order of insertion into the table, so it is not the hash
+ * code of the address, and is not comparable between tables or
+ * processes. </p>
+ *
+ * @see XAddress
+ * @author jdp
+ */
+public class XAddressTable
+    extends java.lang.Object
+{
+    public final static XAddressTable Default = new XAddressTable();
+
+    public final static int IDENTIFIER_BITS = 28;
+    public final static int HOST_BITS = 16;
+    public final static int RESOURCE_BITS = 20;
+
+    private final static int IDENTIFIER_SHIFT = (HOST_BITS + RESOURCE_BITS);
+    private final static int HOST_SHIFT = RESOURCE_BITS;
+
+    private final static long IDENTIFIER_MASK = ((1L << IDENTIFIER_BITS)-1L);
+    private final static long HOST_MASK = ((1L << HOST_BITS)-1L);
+    private final static long RESOURCE_MASK = ((1L << RESOURCE_BITS)-1L);
+
+
+    public final XAddressDictionary identifiers, hosts, resources;
+    /**
+     * Resource kind identifier plus one in {@link #kinds}, by
+     * resource identifier
+     */
+    private volatile int[] resourceKind;
+
+    private final XAddressDictionary kinds;
+
+
+    public XAddressTable(){
+        super();
+        this.identifiers = new XAddressDictionary((int)IDENTIFIER_MASK);
+        this.hosts = new XAddressDictionary((int)HOST_MASK);
+        this.resources = new XAddressDictionary((int)RESOURCE_MASK);
+        this.kinds = new XAddressDictionary((int)RESOURCE_MASK);
+        this.resourceKind = new int[16];
+    }
+
+
+    /**
+     * @param address Address
+     * @return Handle
+     * @exception java.lang.IllegalStateException For a full table
+     */
+    public long handle(XAddress address){
+        if (null == address)
+            return 0L;
+        else
+            return this.handle(address.toString());
+    }
+    /**
+     * Add the components of an XMPP address to the table without
+     * constructing an {@link XAddress}.
+     *
+     * @param string A part or whole XMPP address
+     * @return Handle
+     * @exception java.lang.IllegalArgumentException For invalid input
+     * @exception java.lang.IllegalStateException For a full table
+     */
+    public long handle(CharSequence string){
+        final long offsets = XAddress.Offsets(string);
+        if (XAddress.Status.Valid != XAddress.Validate(offsets,((null != string)?(string.length()):(0)),XAddress.Require.Identifier))
+            throw new IllegalArgumentException(String.valueOf(string));
+        else {
+            final int length = string.length();
+            final int indexOfHost = XAddress.IndexOfHost(offsets);
+            final int indexOfSlash = XAddress.IndexOfSlash(offsets);
+
+            final int identifier, host, resource;
+
+            if (-1 < indexOfHost){
+                identifier = XAddressTable.Field(this.identifiers.id(string,0,indexOfHost),IDENTIFIER_MASK);
+                if (-1 < indexOfSlash){
+                    host = XAddressTable.Field(this.hosts.id(string,(indexOfHost+1),indexOfSlash),HOST_MASK);
+                    final int id = this.resources.id(string,(indexOfSlash+1),length);
+                    resource = XAddressTable.Field(id,RESOURCE_MASK);
+                    this.resourceKind(id);
+                }
+                else {
+                    host = XAddressTable.Field(this.hosts.id(string,(indexOfHost+1),length),HOST_MASK);
+                    resource = 0;
+                }
+            }
+            else {
+                identifier = XAddressTable.Field(this.identifiers.id(string,0,length),IDENTIFIER_MASK);
+                host = 0;
+                resource = 0;
+            }
+            return XAddressTable.Handle(identifier,host,resource);
+        }
+    }
+    /**
+     * Lookup the components of an XMPP address without adding to the
+     * table.
+     *
+     * @param string A part or whole XMPP address
+     * @return Handle, or zero for invalid input or an address having
+     * components not present in the table
+     */
+    public long lookup(CharSequence string){
+        final long offsets = XAddress.Offsets(string);
+        if (XAddress.Status.Valid != XAddress.Validate(offsets,((null != string)?(string.length()):(0)),XAddress.Require.Identifier))
+            return 0L;
+        else {
+            final int length = string.length();
+            final int indexOfHost = XAddress.IndexOfHost(offsets);
+            final int indexOfSlash = XAddress.IndexOfSlash(offsets);
+
+            final int identifier, host, resource;
+
+            if (-1 < indexOfHost){
+                identifier = this.identifiers.lookup(string,0,indexOfHost);
+                if (-1 < indexOfSlash){
+                    host = this.hosts.lookup(string,(indexOfHost+1),indexOfSlash);
+                    resource = this.resources.lookup(string,(indexOfSlash+1),length);
+                    if (-1 == resource)
+                        return 0L;
+                }
+                else {
+                    host = this.hosts.lookup(string,(indexOfHost+1),length);
+                    resource = -1;
+                }
+                if (-1 == host)
+                    return 0L;
+            }
+            else {
+                identifier = this.identifiers.lookup(string,0,length);
+                host = -1;
+                resource = -1;
+            }
+            if (-1 == identifier)
+                return 0L;
+            else
+                return XAddressTable.Handle(identifier+1,host+1,resource+1);
+        }
+    }
+    /**
+     * @param handle Address handle
+     * @return Identifier component
+     */
+    public String identifier(long handle){
+        return this.identifiers.get(XAddressTable.IdentifierId(handle));
+    }
+    /**
+     * @param handle Address handle
+     * @return Host component, or null
+     */
+    public String host(long handle){
+        final int id = XAddressTable.HostId(handle);
+        if (-1 < id)
+            return this.hosts.get(id);
+        else
+            return null;
+    }
+    /**
+     * @param handle Address handle
+     * @return Resource component, or null
+     */
+    public String resource(long handle){
+        final int id = XAddressTable.ResourceId(handle);
+        if (-1 < id)
+            return this.resources.get(id);
+        else
+            return null;
+    }
+    /**
+     * @param handle Address handle
+     * @return Resource kind identifier, or negative one for no
+     * resource
+     */
+    public int resourceKindId(long handle){
+        final int id = XAddressTable.ResourceId(handle);
+        if (-1 < id)
+            return this.resourceKind(id);
+        else
+            return -1;
+    }
+    /**
+     * @param handle Address handle
+     * @return String form of the address
+     */
+    public String toString(long handle){
+        final String identifier = this.identifier(handle);
+        final String host = this.host(handle);
+        if (null == host)
+            return identifier;
+        else {
+            final String resource = this.resource(handle);
+            final StringBuilder string = new StringBuilder();
+            string.append(identifier);
+            string.append('@');
+            string.append(host);
+            if (null != resource){
+                string.append('/');
+                string.append(resource);
+            }
+            return string.toString();
+        }
+    }
+    /**
+     * @param handle Address handle
+     * @return Address
+     */
+    public XAddress toXAddress(long handle){
+        return new XAddress(this.toString(handle));
+    }
+    /**
+     * @see XAddress#equals(XAddress)
+     */
+    public boolean equals(long a, long b){
+        if (a == b)
+            return true;
+        else if (0L == a || 0L == b)
+            return false;
+        else if (-1 == ResourceId(a) || -1 == ResourceId(b)){
+
+            if (-1 == HostId(a) || -1 == HostId(b))
+                return (IdentifierId(a) == IdentifierId(b));
+            else
+                return (IdentifierId(a) == IdentifierId(b) && HostId(a) == HostId(b));
+        }
+        else if (IdentifierId(a) == IdentifierId(b) && HostId(a) == HostId(b))
+
+            return (this.resourceKindId(a) == this.resourceKindId(b));
+        else
+            return false;
+    }
+    /**
+     * @see XAddress#compareTo(XAddress)
+     */
+    public int compare(long a, long b){
+        if (a == b)
+            return 0;
+        else if (-1 == ResourceId(a) || -1 == ResourceId(b)){
+
+            if (-1 == HostId(a) || -1 == HostId(b))
+                return this.identifier(a).compareTo(this.identifier(b));
+            else
+                return XAddressTable.Compare(this.identifier(a),this.host(a),null,
+                                             this.identifier(b),this.host(b),null);
+        }
+        else
+            return XAddressTable.Compare(this.identifier(a),this.host(a),this.resource(a),
+                                         this.identifier(b),this.host(b),this.resource(b));
+    }
+    private int resourceKind(int resource){
+        int[] resourceKind = this.resourceKind;
+        if (resource < resourceKind.length && 0 != resourceKind[resource])
+            return (resourceKind[resource]-1);
+        else {
+            final String[] components = XAddress.Resource(this.resources.get(resource));
+            final String kind;
+            if (null != components)
+                kind = components[0];
+            else
+                kind = this.resources.get(resource);
+            final int id = this.kinds.id(kind);
+
+            synchronized(this){
+                resourceKind = this.resourceKind;
+                if (resource >= resourceKind.length){
+                    int length = resourceKind.length;
+                    while (length <= resource){
+                        length <<= 1;
+                    }
+                    final int[] copier = new int[length];
+                    System.arraycopy(resourceKind,0,copier,0,resourceKind.length);
+                    resourceKind = copier;
+                }
+                resourceKind[resource] = (id+1);
+                this.resourceKind = resourceKind;
+            }
+            return id;
+        }
+    }
+
+
+    /**
+     * @param identifier Identifier field, from one
+     * @param host Host field, or zero
+     * @param resource Resource field, or zero
+     * @return Handle
+     */
+    public final static long Handle(int identifier, int host, int resource){
+        return ((((long)identifier) << IDENTIFIER_SHIFT)|(((long)host) << HOST_SHIFT)|((long)resource));
+    }
+    /**
+     * @return Identifier dictionary identifier
+     */
+    public final static int IdentifierId(long handle){
+        return ((int)((handle >>> IDENTIFIER_SHIFT) & IDENTIFIER_MASK))-1;
+    }
+    /**
+     * @return Host dictionary identifier, or negative one
+     */
+    public final static int HostId(long handle){
+        return ((int)((handle >>> HOST_SHIFT) & HOST_MASK))-1;
+    }
+    /**
+     * @return Resource dictionary identifier, or negative one
+     */
+    public final static int ResourceId(long handle){
+        return ((int)(handle & RESOURCE_MASK))-1;
+    }
+    /**
+     * @see XAddress#equals(XAddress)
+     */
+    public final static boolean Equals(long a, long b){
+        return Default.equals(a,b);
+    }
+    /**
+     * @see XAddress#compareTo(XAddress)
+     */
+    public final static int Compare(long a, long b){
+        return Default.compare(a,b);
+    }
+    /**
+     * The hash code employs the identifiers of all components, and is
+     * valid only among the handles of one table.
+     */
+    public final static int HashCode(long handle){
+        handle ^= (handle >>> 33);
+        handle *= 0xFF51AFD7ED558CCDL;
+        handle ^= (handle >>> 33);
+        return (int)handle;
+    }
+    /**
+     * @see XAddress#toString()
+     */
+    public final static String ToString(long handle){
+        return Default.toString(handle);
+    }
+    /**
+     * @param id Dictionary identifier, or negative one for a full
+     * dictionary
+     * @param mask Field bound
+     * @return Field value
+     * @exception java.lang.IllegalStateException For a full
+     * dictionary
+     */
+    private final static int Field(int id, long mask){
+        if (-1 < id && id < mask)
+            return (id+1);
+        else
+            throw new IllegalStateException("Address table full");
+    }
+    /**
+     * Compare the string forms of two addresses from their
+     * components, as in <code>identifier@host/resource</code>.
+     */
+    private final static int Compare(String ai, String ah, String ar, String bi, String bh, String br){
+        final int alen = XAddressTable.Length(ai,ah,ar);
+        final int blen = XAddressTable.Length(bi,bh,br);
+        final int len = Math.min(alen,blen);
+        for (int cc = 0; cc < len; cc++){
+            final char ac = XAddressTable.CharAt(ai,ah,ar,cc);
+            final char bc = XAddressTable.CharAt(bi,bh,br,cc);
+            if (ac != bc)
+                return (ac - bc);
+        }
+        return (alen - blen);
+    }
+    private final static int Length(String identifier, String host, String resource){
+        int length = identifier.length();
+        if (null != host){
+            length += (1 + host.length());
+            if (null != resource)
+                length += (1 + resource.length());
+        }
+        return length;
+    }
+    private final static char CharAt(String identifier, String host, String resource, int index){
+        int length = identifier.length();
+        if (index < length)
+            return identifier.charAt(index);
+        else {
+            index -= length;
+            if (0 == index)
+                return '@';
+            else {
+                index -= 1;
+                length = host.length();
+                if (index < length)
+                    return host.charAt(index);
+                else {
+                    index -= length;
+                    if (0 == index)
+                        return '/';
+                    else
+                        return resource.charAt(index-1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * A lazily materialized XMPP address is backed by its input string
+ * and the delimiter offsets found by {@link
+ * XAddress#Offsets(java.lang.CharSequence)}.  Component strings are
+ * created on first access from the accessor methods.
+ *
+ * <h3>Identity</h3>
+ *
+ * <p> The equals, compare and hash code methods have the semantics
+ * of {@link XAddress}, and are performed over regions of the input
+ * string without materializing components.  A view is compared with
+ * an address by {@link #sameAs(XAddress) sameAs}. </p>
+ *
+ * <h3>Canonical form</h3>
+ *
+ * <p> The input string is the canonical form of the address, and is
+ * returned from {@link #toString()} and {@link #full()}. </p>
+ *
+ * @see XAddress
+ * @author jdp
+ */
+public class XAddressView
+    extends java.lang.Object
+    implements java.lang.CharSequence,
+               java.io.Serializable,
+               java.lang.Comparable<XAddressView>
+{
+    public final static long serialVersionUID = 1L;
+
+
+    private final String string;
+
+    private final int indexOfHost, indexOfSlash;
+
+    private transient String identifier, host, resource, logon, resourceKind, resourceSession;
+
+
+    /**
+     * @param string A part or whole XMPP address
+     */
+    public XAddressView(String string){
+        this(string,XAddress.Require.Identifier);
+    }
+    /**
+     * @param string A part or whole XMPP address, bounded by a
+     * component list length requirement
+     * @param require Input components extent requirement
+     */
+    public XAddressView(String string, XAddress.Require require){
+        super();
+        final long offsets = XAddress.Offsets(string);
+        if (XAddress.Status.Valid != XAddress.Validate(offsets,((null != string)?(string.length()):(0)),require))
+            throw new IllegalArgumentException(string);
+        else {
+            this.string = string;
+            this.indexOfHost = XAddress.IndexOfHost(offsets);
+            this.indexOfSlash = XAddress.IndexOfSlash(offsets);
+        }
+    }
+
+
+    public boolean hasHost(){
+        return (-1 < this.indexOfHost);
+    }
+    public boolean hasResource(){
+        return (-1 < this.indexOfSlash);
+    }
+    public String identifier(){
+        String identifier = this.identifier;
+        if (null == identifier){
+            if (-1 < this.indexOfHost)
+                identifier = this.string.substring(0,this.indexOfHost);
+            else
+                identifier = this.string;
+
+            this.identifier = identifier;
+        }
+        return identifier;
+    }
+    /**
+     * @return Null for an identifier
+     */
+    public String host(){
+        String host = this.host;
+        if (null == host && -1 < this.indexOfHost){
+            if (-1 < this.indexOfSlash)
+                host = this.string.substring(this.indexOfHost+1,this.indexOfSlash);
+            else
+                host = this.string.substring(this.indexOfHost+1);
+
+            this.host = host;
+        }
+        return host;
+    }
+    /**
+     * @return Null for an identifier or logon
+     */
+    public String resource(){
+        String resource = this.resource;
+        if (null == resource && -1 < this.indexOfSlash){
+
+            resource = this.string.substring(this.indexOfSlash+1);
+
+            this.resource = resource;
+        }
+        return resource;
+    }
+    /**
+     * @return Null for an identifier
+     */
+    public String logon(){
+        String logon = this.logon;
+        if (null == logon && -1 < this.indexOfHost){
+            if (-1 < this.indexOfSlash)
+                logon = this.string.substring(0,this.indexOfSlash);
+            else
+                logon = this.string;
+
+            this.logon = logon;
+        }
+        return logon;
+    }
+    /**
+     * @return Null for an identifier or logon
+     */
+    public String full(){
+        if (-1 < this.indexOfSlash)
+            return this.string;
+        else
+            return null;
+    }
+    /**
+     * @return Null for an identifier or logon
+     */
+    public String resourceKind(){
+        String resourceKind = this.resourceKind;
+        if (null == resourceKind && -1 < this.indexOfSlash){
+
+            this.resourceComponents();
+
+            resourceKind = this.resourceKind;
+        }
+        return resourceKind;
+    }
+    /**
+     * @return Null for an identifier or logon
+     */
+    public String resourceSession(){
+        String resourceSession = this.resourceSession;
+        if (null == resourceSession && -1 < this.indexOfSlash){
+
+            this.resourceComponents();
+
+            resourceSession = this.resourceSession;
+        }
+        return resourceSession;
+    }
+    /**
+     * @return Eager address from the input string
+     */
+    public XAddress toXAddress(){
+        return new XAddress(this.string);
+    }
+    public int length(){
+        return this.string.length();
+    }
+    public char charAt(int index){
+        return this.string.charAt(index);
+    }
+    public CharSequence subSequence(int start, int end){
+        return this.string.subSequence(start,end);
+    }
+    public int hashCode(){
+        return this.string.hashCode();
+    }
+    public String toString(){
+        return this.string;
+    }
+    public boolean equals(Object that){
+        if (this == that)
+            return true;
+        else if (that instanceof XAddressView)
+
+            return this.equals( (XAddressView)that);
+
+        else if (that instanceof String){
+            final String string = (String)that;
+
+            return XAddressView.RegionEquals(this.string,this.lengthOfBare(),string,string.length());
+        }
+        else
+            return false;
+    }
+    public boolean equals(XAddressView that){
+        if (this == that)
+            return true;
+        else if (null == that)
+            return false;
+        else if (-1 == this.indexOfSlash || -1 == that.indexOfSlash){
+
+            if (-1 == this.indexOfHost || -1 == that.indexOfHost)
+                return XAddressView.RegionEquals(this.string,this.lengthOfIdentifier(),
+                                                 that.string,that.lengthOfIdentifier());
+            else
+                return XAddressView.RegionEquals(this.string,this.lengthOfBare(),
+                                                 that.string,that.lengthOfBare());
+        }
+        else if (XAddressView.RegionEquals(this.string,this.indexOfSlash,
+                                           that.string,that.indexOfSlash))
+        {
+            return this.resourceKind().equals(that.resourceKind());
+        }
+        else
+            return false;
+    }
+    /**
+     * Compare with an address by the semantics of equals.  This is
+     * not an equals method, as an address is never equal to a view.
+     *
+     * @param that Address
+     * @return Logon or identifier, and resource kind, are equal
+     */
+    public boolean sameAs(XAddress that){
+        if (null == that)
+            return false;
+        else if (-1 == this.indexOfSlash || null == that.resource){
+
+            if (-1 == this.indexOfHost || null == that.host)
+                return XAddressView.RegionEquals(this.string,this.lengthOfIdentifier(),
+                                                 that.identifier,that.identifier.length());
+            else
+                return XAddressView.RegionEquals(this.string,this.lengthOfBare(),
+                                                 that.logon,that.logon.length());
+        }
+        else if (XAddressView.RegionEquals(this.string,this.indexOfSlash,
+                                           that.logon,that.logon.length()))
+        {
+            return this.resourceKind().equals(that.resourceKind);
+        }
+        else
+            return false;
+    }
+    public int compareTo(XAddressView that){
+        if (this == that)
+            return 0;
+        else if (-1 == this.indexOfSlash || -1 == that.indexOfSlash){
+
+            if (-1 == this.indexOfHost || -1 == that.indexOfHost)
+                return XAddressView.RegionCompare(this.string,this.lengthOfIdentifier(),
+                                                  that.string,that.lengthOfIdentifier());
+            else
+                return XAddressView.RegionCompare(this.string,this.lengthOfBare(),
+                                                  that.string,that.lengthOfBare());
+        }
+        else {
+            return this.string.compareTo(that.string);
+        }
+    }
+    /**
+     * @return Length of the identifier component
+     */
+    private int lengthOfIdentifier(){
+        if (-1 < this.indexOfHost)
+            return this.indexOfHost;
+        else
+            return this.string.length();
+    }
+    /**
+     * @return Length of the logon or identifier, as in the bare
+     * address
+     */
+    private int lengthOfBare(){
+        if (-1 < this.indexOfSlash)
+            return this.indexOfSlash;
+        else
+            return this.string.length();
+    }
+    private void resourceComponents(){
+        final String resource = this.resource();
+        final String[] components = XAddress.Resource(resource);
+        if (null != components){
+            this.resourceSession = components[1];
+            this.resourceKind = components[0];
+        }
+        else {
+            this.resourceSession = resource;
+            this.resourceKind = resource;
+        }
+    }
+
+
+    /**
+     * Compare string prefixes with the semantics of {@link
+     * java.lang.String#equals(java.lang.Object)}
+     */
+    public final static boolean RegionEquals(String a, int alen, String b, int blen){
+        if (alen == blen)
+            return a.regionMatches(0,b,0,alen);
+        else
+            return false;
+    }
+    /**
+     * Compare string prefixes with the semantics of {@link
+     * java.lang.String#compareTo(java.lang.String)}
+     */
+    public final static int RegionCompare(String a, int alen, String b, int blen){
+        final int len = Math.min(alen,blen);
+        for (int cc = 0; cc < len; cc++){
+            final char ac = a.charAt(cc);
+            final char bc = b.charAt(cc);
+            if (ac != bc)
+                return (ac - bc);
+        }
+        return (alen - blen);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocation budgets of the parse and lookup paths, in bytes per
+ * operation measured by {@link
+ * com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} over
+ * addresses from {@link XAddressCorpus}.
+ *
+ * <p> Each operation is run to compilation before it is measured.  A
+ * budget of zero is a path meant to be free of allocation, and admits
+ * less than one byte per operation for the noise of measurement. </p>
+ *
+ * <p> Exits with status one, listing each operation over its budget,
+ * when any is.  Run with <code>ant test.allocation</code>. </p>
+ *
+ * <pre>
+ * java xma.XAddressAllocationTest [operations]
+ * </pre>
+ *
+ * @author jdp
+ */
+public class XAddressAllocationTest
+    extends java.lang.Object
+{
+    private final static int SIZE = 1024;
+
+    /**
+     * Operation under test
+     */
+    abstract static class Operation
+        extends java.lang.Object
+    {
+        final String name;
+        /**
+         * Bytes per operation
+         */
+        final double budget;
+
+
+        Operation(String name, double budget){
+            super();
+            this.name = name;
+            this.budget = budget;
+        }
+
+
+        /**
+         * @param index Index into the corpus, modulo its size
+         * @return Result
+         */
+        abstract long run(int index);
+    }
+
+
+    private final static String[] Strings;
+
+    private final static String[] Fulls;
+
+    private final static XAddress[] Addresses;
+
+    private final static XAddress[] Copies;
+
+    static {
+        final XAddressCorpus corpus = new XAddressCorpus();
+        Addresses = corpus.addresses(SIZE);
+        Strings = new String[SIZE];
+        Copies = new XAddress[SIZE];
+        final java.util.ArrayList<String> fulls = new java.util.ArrayList<String>();
+        for (int cc = 0; cc < SIZE; cc++){
+            /*
+             * As a server registers the hosts it serves
+             */
+            if (null != Addresses[cc].host)
+                XAddressDictionary.Hosts.id(Addresses[cc].host);
+            Strings[cc] = Addresses[cc].toString();
+            Copies[cc] = new XAddress(new String(Strings[cc]));
+            if (null != Addresses[cc].resource)
+                fulls.add(Strings[cc]);
+        }
+        Fulls = fulls.toArray(new String[fulls.size()]);
+    }
+
+
+    private static long Sink;
+
+
+    public static void main(String[] argv){
+        final int count = (0 < argv.length)?(Integer.parseInt(argv[0])):(200000);
+
+        final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()){
+            System.out.println("Thread allocated memory is not supported");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final XAddressCache cache = new XAddressCache(SIZE << 1);
+        final XAddressPool pool = new XAddressPool();
+        final XAddressMap<String> map = new XAddressMap<String>();
+        for (int cc = 0; cc < SIZE; cc++){
+            cache.get(Strings[cc]);
+            pool.intern(Addresses[cc]);
+            map.put(Addresses[cc],Strings[cc]);
+        }
+
+        final Operation[] operations = {
+            new Operation("Offsets",0){
+                long run(int index){
+                    return XAddress.Offsets(Strings[index]);
+                }
+            },
+            new Operation("Validate",0){
+                long run(int index){
+                    return XAddress.Validate(Strings[index],XAddress.Require.Identifier).ordinal();
+                }
+            },
+            new Operation("Scan",200){
+                long run(int index){
+                    return XAddress.Scan(Strings[index]).length;
+                }
+            },
+            new Operation("Resource",85){
+                long run(int index){
+                    final String[] components = XAddress.Resource(Addresses[index].resource);
+                    return (null == components)?(0):(components.length);
+                }
+            },
+            new Operation("new XAddress",265){
+                long run(int index){
+                    return new XAddress(Strings[index]).length();
+                }
+            },
+            new Operation("new XAddress.Full",320){
+                long run(int index){
+                    return new XAddress.Full(Fulls[index % Fulls.length]).length();
+                }
+            },
+            new Operation("equals",0){
+                long run(int index){
+                    return (Addresses[index].equals(Copies[index]))?(1):(0);
+                }
+            },
+            new Operation("compareTo",0){
+                long run(int index){
+                    return Addresses[index].compareTo(Copies[(index+1) & (SIZE-1)]);
+                }
+            },
+            new Operation("hashCode",0){
+                long run(int index){
+                    return Addresses[index].hashCode();
+                }
+            },
+            new Operation("hash64",0){
+                long run(int index){
+                    return Addresses[index].hash64();
+                }
+            },
+            new Operation("hostId",0){
+                long run(int index){
+                    return Copies[index].hostId();
+                }
+            },
+            new Operation("XAddressCache.get",0){
+                long run(int index){
+                    return cache.get(Strings[index]).length();
+                }
+            },
+            new Operation("XAddressPool.intern",0){
+                long run(int index){
+                    return pool.intern(Copies[index]).length();
+                }
+            },
+            new Operation("XAddressDictionary.lookup",0){
+                long run(int index){
+                    final XAddress address = Addresses[index];
+                    return XAddressDictionary.Hosts.lookup(address.host);
+                }
+            },
+            new Operation("XAddressMap.get",0){
+                long run(int index){
+                    return map.get((CharSequence)Strings[index]).length();
+                }
+            }
+        };
+
+        boolean failed = false;
+        for (Operation operation : operations){
+            /*
+             * Compile
+             */
+            for (int cc = 0; cc < count; cc++){
+                Sink += operation.run(cc & (SIZE-1));
+            }
+            final long thread = Thread.currentThread().getId();
+            final long start = threads.getThreadAllocatedBytes(thread);
+            for (int cc = 0; cc < count; cc++){
+                Sink += operation.run(cc & (SIZE-1));
+            }
+            final long end = threads.getThreadAllocatedBytes(thread);
+            final double bytes = ((double)(end-start)/count);
+            final boolean over = (0 == operation.budget)?(1.0 <= bytes):(bytes > operation.budget);
+            System.out.printf("%-28s %8.1f bytes/op  budget %6.0f  %s%n",operation.name,bytes,operation.budget,(over)?("OVER BUDGET"):("ok"));
+            failed |= over;
+        }
+        if (failed){
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        else if (0L == Sink)
+            System.out.println();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * A seedable generator of synthetic address strings shaped like
+ * production traffic, shared by the benchmarks and harnesses.
+ *
+ * <h3>Shape</h3>
+ *
+ * <ul>
+ * <li> Users are drawn from a Zipf distribution over the user
+ * population, so that a few users are frequent. </li>
+ * <li> Hosts are drawn from a steeper Zipf distribution, so that a
+ * few hosts are dominant. </li>
+ * <li> A fraction of addresses are bare.  The resources of the others
+ * are a mix of "android" and "iPhone" with hex sessions, dotted
+ * resources, and plain client names, as recognized by {@link
+ * XAddress#Resource(java.lang.String)}. </li>
+ * <li> A fraction of strings are malformed, having a second '@', a
+ * '/' without host, or an empty component. </li>
+ * </ul>
+ *
+ * <p> The sequence of strings is determined by the seed and the
+ * settings. </p>
+ *
+ * <h3>Named corpora</h3>
+ * <pre>
+ * production  the default shape
+ * bare        identifier@host
+ * full        identifier@host/resource, dotted and plain resources
+ * android     identifier@host/android + hex session
+ * iphone      identifier@host/iPhone + hex session
+ * longhost    identifier@(many labels)/resource
+ * malformed   the default shape, one in four malformed
+ * </pre>
+ *
+ * <pre>
+ * java xma.XAddressCorpus file count [name [seed]]
+ * </pre>
+ *
+ * @author jdp
+ */
+public class XAddressCorpus
+    extends java.lang.Object
+    implements java.util.Iterator<String>
+{
+    public final static long SEED = 0x584D41L;
+
+    public final static String[] NAMES = {
+        "production", "bare", "full", "android", "iphone", "longhost", "malformed"
+    };
+
+    private final static String[] HOSTS = {
+        "gmail.com", "chat.facebook.com", "jabber.org", "example.com",
+        "xmpp.example.net", "conference.example.com", "im.example.org", "jabber.ccc.de"
+    };
+
+    private final static String[] CLIENTS = {
+        "Psi+", "gajim", "tkabber", "pidgin", "Smack", "conversations", "BitlBee", "Adium"
+    };
+
+    private final static String[] PLACES = {
+        "home", "office", "laptop", "desktop", "work", "mobile"
+    };
+
+
+    private final Random random;
+
+    private int users = 1000000;
+
+    private double userSkew = 1.07;
+
+    private int hosts = 64;
+
+    private double hostSkew = 1.5;
+
+    private double bare = 0.3;
+
+    private double malformed = 0.0;
+    /**
+     * Relative frequencies of android, iPhone, dotted and plain
+     * resources
+     */
+    private double android = 0.35, iphone = 0.25, dotted = 0.25, plain = 0.15;
+
+    private boolean longHosts;
+
+    private double[] userCdf, hostCdf;
+
+    private String[] hostNames;
+
+
+    public XAddressCorpus(){
+        this(SEED);
+    }
+    public XAddressCorpus(long seed){
+        super();
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * @param count Size of the user population
+     * @param skew Zipf exponent
+     */
+    public XAddressCorpus users(int count, double skew){
+        if (1 > count || 0.0 > skew)
+            throw new IllegalArgumentException();
+        else {
+            this.users = count;
+            this.userSkew = skew;
+            this.userCdf = null;
+            return this;
+        }
+    }
+    /**
+     * @param count Number of hosts
+     * @param skew Zipf exponent
+     */
+    public XAddressCorpus hosts(int count, double skew){
+        if (1 > count || 0.0 > skew)
+            throw new IllegalArgumentException();
+        else {
+            this.hosts = count;
+            this.hostSkew = skew;
+            this.hostCdf = null;
+            this.hostNames = null;
+            return this;
+        }
+    }
+    /**
+     * @param longHosts Hosts having many labels
+     */
+    public XAddressCorpus longHosts(boolean longHosts){
+        this.longHosts = longHosts;
+        this.hostNames = null;
+        return this;
+    }
+    /**
+     * @param fraction Fraction of bare addresses
+     */
+    public XAddressCorpus bare(double fraction){
+        this.bare = Fraction(fraction);
+        return this;
+    }
+    /**
+     * @param fraction Fraction of malformed strings
+     */
+    public XAddressCorpus malformed(double fraction){
+        this.malformed = Fraction(fraction);
+        return this;
+    }
+    /**
+     * Relative frequencies of resource shapes
+     */
+    public XAddressCorpus resources(double android, double iphone, double dotted, double plain){
+        final double sum = (android + iphone + dotted + plain);
+        if (!(0.0 < sum) || 0.0 > android || 0.0 > iphone || 0.0 > dotted || 0.0 > plain)
+            throw new IllegalArgumentException();
+        else {
+            this.android = (android / sum);
+            this.iphone = (iphone / sum);
+            this.dotted = (dotted / sum);
+            this.plain = (plain / sum);
+            return this;
+        }
+    }
+    public boolean hasNext(){
+        return true;
+    }
+    /**
+     * @return Next address string
+     */
+    public String next(){
+        if (null == this.userCdf){
+            this.userCdf = Cdf(this.users,this.userSkew);
+        }
+        if (null == this.hostCdf){
+            this.hostCdf = Cdf(this.hosts,this.hostSkew);
+        }
+        if (null == this.hostNames){
+            this.hostNames = HostNames(this.hosts,this.longHosts);
+        }
+        final Random random = this.random;
+        final int user = Sample(this.userCdf,random.nextDouble());
+        final String host = this.hostNames[Sample(this.hostCdf,random.nextDouble())];
+        final StringBuilder string = new StringBuilder();
+        string.append("user").append(user);
+
+        if (random.nextDouble() < this.malformed){
+            switch(random.nextInt(4)){
+            case 0:
+                string.append('@').append(host).append('@').append(host);
+                break;
+            case 1:
+                string.append('/').append(this.resource(random));
+                break;
+            case 2:
+                string.setLength(0);
+                string.append('@').append(host);
+                break;
+            default:
+                string.append('@').append(host).append('/');
+                break;
+            }
+        }
+        else {
+            string.append('@').append(host);
+            if (random.nextDouble() >= this.bare)
+                string.append('/').append(this.resource(random));
+        }
+        return string.toString();
+    }
+    public void remove(){
+        throw new UnsupportedOperationException();
+    }
+    /**
+     * @param count Number of strings
+     * @return Next strings
+     */
+    public String[] generate(int count){
+        final String[] list = new String[count];
+        for (int cc = 0; cc < count; cc++){
+            list[cc] = this.next();
+        }
+        return list;
+    }
+    /**
+     * @param count Number of valid strings
+     * @return Addresses of the next valid strings
+     */
+    public XAddress[] addresses(int count){
+        final XAddress[] list = new XAddress[count];
+        for (int cc = 0; cc < count; ){
+            final XAddress address = XAddress.Parse(this.next(),XAddress.Require.Identifier);
+            if (null != address)
+                list[cc++] = address;
+        }
+        return list;
+    }
+    /**
+     * Write strings one per line in UTF-8.
+     *
+     * @param out Output, not closed
+     * @param count Number of strings
+     */
+    public void write(Writer out, long count)
+        throws IOException
+    {
+        for (long cc = 0; cc < count; cc++){
+            out.write(this.next());
+            out.write('\n');
+        }
+        out.flush();
+    }
+    private String resource(Random random){
+        final double shape = random.nextDouble();
+        if (shape < this.android)
+            return "android"+Long.toHexString(random.nextLong());
+        else if (shape < (this.android + this.iphone))
+            return "iPhone"+Long.toHexString(random.nextLong()).substring(0,8);
+        else if (shape < (this.android + this.iphone + this.dotted))
+            return CLIENTS[random.nextInt(CLIENTS.length)]+'.'+PLACES[random.nextInt(PLACES.length)];
+        else
+            return CLIENTS[random.nextInt(CLIENTS.length)];
+    }
+
+
+    /**
+     * @param name One of {@link #NAMES}
+     * @param seed Random seed
+     * @return Generator of the named corpus
+     */
+    public final static XAddressCorpus Named(String name, long seed){
+        final XAddressCorpus corpus = new XAddressCorpus(seed);
+        if ("production".equals(name))
+            return corpus;
+        else if ("bare".equals(name))
+            return corpus.bare(1.0);
+        else if ("full".equals(name))
+            return corpus.bare(0.0).resources(0.0,0.0,0.6,0.4);
+        else if ("android".equals(name))
+            return corpus.bare(0.0).resources(1.0,0.0,0.0,0.0);
+        else if ("iphone".equals(name))
+            return corpus.bare(0.0).resources(0.0,1.0,0.0,0.0);
+        else if ("longhost".equals(name))
+            return corpus.bare(0.0).longHosts(true);
+        else if ("malformed".equals(name))
+            return corpus.malformed(0.25);
+        else
+            throw new IllegalArgumentException(name);
+    }
+    public static void main(String[] argv)
+        throws IOException
+    {
+        if (2 > argv.length){
+            System.err.println("Usage: XAddressCorpus file count [name [seed]]");
+            System.exit(1);
+        }
+        else {
+            final String name = (2 < argv.length)?(argv[2]):("production");
+            final long seed = (3 < argv.length)?(Long.parseLong(argv[3])):(SEED);
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(argv[0]),XAddress.UTF8),0x10000);
+            try {
+                Named(name,seed).write(out,Long.parseLong(argv[1]));
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+
+
+    private final static double Fraction(double fraction){
+        if (0.0 > fraction || 1.0 < fraction)
+            throw new IllegalArgumentException(String.valueOf(fraction));
+        else
+            return fraction;
+    }
+    /**
+     * @return Cumulative Zipf distribution over ranks one to count
+     */
+    private final static double[] Cdf(int count, double skew){
+        final double[] cdf = new double[count];
+        double sum = 0.0;
+        for (int cc = 0; cc < count; cc++){
+            sum += (1.0 / Math.pow(cc+1,skew));
+            cdf[cc] = sum;
+        }
+        for (int cc = 0; cc < count; cc++){
+            cdf[cc] /= sum;
+        }
+        return cdf;
+    }
+    /**
+     * @return Index of the first element of the cumulative
+     * distribution not less than the variate
+     */
+    private final static int Sample(double[] cdf, double u){
+        int lo = 0, hi = (cdf.length-1);
+        while (lo < hi){
+            final int mid = ((lo + hi) >>> 1);
+            if (cdf[mid] < u)
+                lo = (mid+1);
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+    private final static String[] HostNames(int count, boolean longHosts){
+        final String[] list = new String[count];
+        for (int cc = 0; cc < count; cc++){
+            final String host = (cc < HOSTS.length)?(HOSTS[cc]):("xmpp"+cc+".example"+(cc % 7)+".net");
+            if (longHosts)
+                list[cc] = "conference.region"+(cc & 3)+".cluster"+cc+".datacenter.services."+host;
+            else
+                list[cc] = host;
+        }
+        return list;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Size and speed of the {@link XAddressSerial} form of addresses from
+ * {@link XAddressCorpus}, against the default form of seven strings
+ * that it replaces.  The default form is written by {@link
+ * XAddressSerialBench.Legacy}, having the fields of an address.
+ * Exits with status one when an address read differs from the
+ * address written.
+ *
+ * <pre>
+ * java xma.XAddressSerialBench [addresses [hosts]]
+ * </pre>
+ *
+ * @author jdp
+ */
+public class XAddressSerialBench
+    extends java.lang.Object
+{
+    /**
+     * Default serial form of an address
+     */
+    final static class Legacy
+        extends java.lang.Object
+        implements java.io.Serializable
+    {
+        private final static long serialVersionUID = 1L;
+
+
+        final String identifier, host, resource, logon, full;
+
+        final String resourceKind, resourceSession;
+
+
+        Legacy(XAddress address){
+            super();
+            this.identifier = address.identifier;
+            this.host = address.host;
+            this.resource = address.resource;
+            this.logon = address.logon;
+            this.full = address.full;
+            this.resourceKind = address.resourceKind;
+            this.resourceSession = address.resourceSession;
+        }
+    }
+
+
+    public static void main(String[] argv)
+        throws Exception
+    {
+        final int count = (0 < argv.length)?(Integer.parseInt(argv[0])):(10000);
+        final int hosts = (1 < argv.length)?(Integer.parseInt(argv[1])):(8);
+
+        final XAddress[] addresses = new XAddressCorpus().hosts(hosts,1.5).addresses(count);
+        final Legacy[] legacy = new Legacy[count];
+        for (int cc = 0; cc < count; cc++){
+            /*
+             * Registered hosts are shared by the addresses read
+             */
+            if (null != addresses[cc].host)
+                XAddressDictionary.Hosts.id(addresses[cc].host);
+            legacy[cc] = new Legacy(addresses[cc]);
+        }
+        /*
+         * Correctness
+         */
+        final Object[] read = (Object[])Read(Write(addresses));
+        boolean failed = false;
+        for (int cc = 0; cc < count; cc++){
+            final XAddress a = addresses[cc];
+            final XAddress b = (XAddress)read[cc];
+            if (!a.toString().equals(b.toString()) || a.getClass() != b.getClass() ||
+                !Same(a.resourceKind,b.resourceKind) || !Same(a.resourceSession,b.resourceSession) ||
+                !Same(a.host,b.host) || (null != b.host && b.host != XAddressDictionary.Hosts.get(b.hostId())))
+            {
+                System.out.printf("round trip %s read %s%n",a,b);
+                failed = true;
+                break;
+            }
+        }
+        final XAddress full = new XAddress.Full("a@b.example/c");
+        if (XAddress.Full.class != Read(Write(full)).getClass()){
+            System.out.println("round trip class");
+            failed = true;
+        }
+        /*
+         * Size
+         */
+        System.out.printf("single  legacy %d bytes  compact %d bytes%n",
+                          Write(legacy[0]).length,Write(addresses[0]).length);
+        System.out.printf("stream  legacy %.1f bytes  compact %.1f bytes per address%n",
+                          ((double)Write(legacy).length/count),((double)Write(addresses).length/count));
+        /*
+         * Speed
+         */
+        for (int warm = 0; warm < 5; warm++){
+            Read(Write(legacy));
+            Read(Write(addresses));
+        }
+        final int rounds = 10;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++){
+            Read(Write(legacy));
+        }
+        final double legacyTime = ((double)(System.nanoTime()-start)/(rounds*count));
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++){
+            Read(Write(addresses));
+        }
+        final double compactTime = ((double)(System.nanoTime()-start)/(rounds*count));
+        System.out.printf("round trip  legacy %.1f ns  compact %.1f ns per address%n",legacyTime,compactTime);
+
+        if (failed){
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+    private final static byte[] Write(Object object)
+        throws IOException
+    {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(buffer);
+        out.writeObject(object);
+        out.close();
+        return buffer.toByteArray();
+    }
+    private final static Object Read(byte[] bytes)
+        throws IOException, ClassNotFoundException
+    {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        }
+        finally {
+            in.close();
+        }
+    }
+    private final static boolean Same(String a, String b){
+        return (null == a)?(null == b):(a.equals(b));
+    }
+}
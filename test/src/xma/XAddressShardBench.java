@@ -0,0 +1,180 @@
+/*
+ * XMPP Address (http://github.com/syntelos/xma)
+ * Copyright (C) 2012, John Pritchard
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package xma;
+
+/**
+ * Sharding of distinct bare addresses from {@link XAddressCorpus}
+ * over simulated in process nodes.  Reports the balance of each
+ * assignment, the fraction of keys moved by adding and removing a
+ * node, and the cost of a lookup.  Exits with status one when an
+ * assignment separates the resources of a logon, or moves more than
+ * twice the ideal fraction of keys.
+ *
+ * <pre>
+ * java xma.XAddressShardBench [nodes [users]]
+ * </pre>
+ *
+ * @author jdp
+ */
+public class XAddressShardBench
+    extends java.lang.Object
+{
+    /**
+     * Simulated node
+     */
+    final static class Node
+        extends java.lang.Object
+    {
+        final String name;
+
+        int load;
+
+
+        Node(String name){
+            super();
+            this.name = name;
+        }
+    }
+
+
+    public static void main(String[] argv){
+        final int nodes = (0 < argv.length)?(Integer.parseInt(argv[0])):(16);
+        final int users = (1 < argv.length)?(Integer.parseInt(argv[1])):(200000);
+
+        final XAddress[] addresses = XAddressShardBench.Distinct(users);
+        boolean failed = false;
+
+        for (int mode = 0; mode < 2; mode++){
+            final boolean jump = (0 == mode);
+            final String label = (jump)?("jump"):("rendezvous");
+
+            final XAddressShard<Node> shard = new XAddressShard<Node>();
+            final Node[] list = new Node[nodes];
+            for (int cc = 0; cc < nodes; cc++){
+                list[cc] = new Node("node"+cc);
+                shard.add(list[cc].name,list[cc]);
+            }
+            final Node[] before = Assign(shard,addresses,jump);
+            /*
+             * Balance
+             */
+            int min = Integer.MAX_VALUE, max = 0;
+            for (int cc = 0; cc < users; cc++){
+                before[cc].load += 1;
+            }
+            for (Node node : list){
+                min = Math.min(min,node.load);
+                max = Math.max(max,node.load);
+            }
+            System.out.printf("%-10s nodes %d users %d load min %d max %d mean %d%n",label,nodes,users,min,max,(users/nodes));
+            /*
+             * Resources of a logon
+             */
+            for (int cc = 0; cc < users; cc++){
+                final XAddress other = new XAddress(XAddressKey.BareForm(addresses[cc])+"/other");
+                final Node node = (jump)?(shard.jump(other)):(shard.rendezvous(other));
+                if (node != before[cc]){
+                    System.out.printf("%-10s logon %s separated%n",label,XAddressKey.BareForm(addresses[cc]));
+                    failed = true;
+                    break;
+                }
+            }
+            /*
+             * Add a node
+             */
+            shard.add("node"+nodes,new Node("node"+nodes));
+            final Node[] added = Assign(shard,addresses,jump);
+            final double addMoved = Moved(before,added);
+            final double addIdeal = (1.0/(nodes+1));
+            System.out.printf("%-10s add moved %.4f ideal %.4f%n",label,addMoved,addIdeal);
+            failed |= (addMoved > (2.0 * addIdeal));
+            /*
+             * Remove the added node, then a middle node
+             */
+            shard.remove("node"+nodes);
+            final Node[] restored = Assign(shard,addresses,jump);
+            System.out.printf("%-10s remove last moved %.4f ideal %.4f%n",label,Moved(before,restored),0.0);
+            failed |= (0.0 != Moved(before,restored));
+
+            shard.remove("node"+(nodes/2));
+            final Node[] removed = Assign(shard,addresses,jump);
+            final double removeMoved = Moved(before,removed);
+            System.out.printf("%-10s remove middle moved %.4f ideal %.4f%n",label,removeMoved,(1.0/nodes));
+            failed |= (removeMoved > (2.0/nodes));
+            /*
+             * Add a node in place of the middle node
+             */
+            shard.add("node"+(nodes+1),new Node("node"+(nodes+1)));
+            final Node[] replaced = Assign(shard,addresses,jump);
+            final double replaceMoved = Moved(removed,replaced);
+            System.out.printf("%-10s add again moved %.4f ideal %.4f%n",label,replaceMoved,(1.0/nodes));
+            failed |= (replaceMoved > (2.0/nodes));
+            /*
+             * Lookup cost
+             */
+            for (int warm = 0; warm < 5; warm++){
+                Assign(shard,addresses,jump);
+            }
+            final int rounds = 10;
+            final long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++){
+                Assign(shard,addresses,jump);
+            }
+            final long elapsed = (System.nanoTime()-start);
+            System.out.printf("%-10s lookup %.1f ns%n",label,((double)elapsed/(rounds*users)));
+        }
+        if (failed){
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+    /**
+     * @param count Number of users
+     * @return Distinct bare addresses, as the corpus repeats its
+     * frequent users
+     */
+    private final static XAddress[] Distinct(int count){
+        final XAddressCorpus corpus = new XAddressCorpus().malformed(0.0).bare(1.0);
+        final java.util.LinkedHashSet<String> set = new java.util.LinkedHashSet<String>();
+        while (set.size() < count){
+            set.add(corpus.next());
+        }
+        final XAddress[] list = new XAddress[count];
+        int cc = 0;
+        for (String string : set){
+            list[cc++] = new XAddress(string);
+        }
+        return list;
+    }
+    private final static Node[] Assign(XAddressShard<Node> shard, XAddress[] addresses, boolean jump){
+        final Node[] list = new Node[addresses.length];
+        for (int cc = 0, len = addresses.length; cc < len; cc++){
+            list[cc] = (jump)?(shard.jump(addresses[cc])):(shard.rendezvous(addresses[cc]));
+        }
+        return list;
+    }
+    private final static double Moved(Node[] a, Node[] b){
+        int moved = 0;
+        for (int cc = 0, len = a.length; cc < len; cc++){
+            if (!a[cc].name.equals(b[cc].name))
+                moved += 1;
+        }
+        return ((double)moved/a.length);
+    }
+}